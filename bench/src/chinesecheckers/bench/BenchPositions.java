@@ -0,0 +1,74 @@
+package chinesecheckers.bench;
+
+import chinesecheckers.ai.Minimax;
+import chinesecheckers.ai.Mode;
+import chinesecheckers.util.BoardShape;
+import chinesecheckers.util.Move;
+import chinesecheckers.util.Piece;
+import chinesecheckers.util.Player;
+import chinesecheckers.util.State;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The fixed positions the benchmarks run on: an opening, a mid-game and an endgame position of a 2 player game
+ * on every board shape.
+ * The positions are reached by a game that opens with a few seeded random moves and is then played by
+ * {@link Minimax} in {@link Mode#NORMAL}, so they are the same in every run.
+ */
+final class BenchPositions {
+
+    private static final int NUM_PLAYERS = 2;
+    private static final long SEED = 7;
+    private static final int RANDOM_OPENING_PLIES = 4;
+    private static final int MID_GAME_PLY = 30;
+    private static final int END_GAME_PLAYER_DISTANCE = 12;
+    private static final int MAX_PLIES = 1000;
+
+    private BenchPositions() {
+    }
+
+    /**
+     * Creates the positions, named by board shape and game phase.
+     * @return the positions, a new state for every position
+     */
+    static Map<String, State> create() {
+        Map<String, State> positions = new LinkedHashMap<>();
+        for (BoardShape shape : BoardShape.values()) {
+            String name = shape.name().toLowerCase();
+            ArrayList<Player> players = new ArrayList<>();
+            for (Piece piece : shape.getPieces(NUM_PLAYERS)) {
+                Player player = new Player(piece, false);
+                player.setMode(Mode.NORMAL);
+                players.add(player);
+            }
+            State state = shape.createState(players);
+            positions.put(name + "-opening", new State(state));
+            Random random = new Random(SEED);
+            for (int ply = 0; ply < MAX_PLIES && state.getWinner() == null; ply++) {
+                if (ply == MID_GAME_PLY) {
+                    positions.put(name + "-mid-game", new State(state));
+                }
+                if (ply > MID_GAME_PLY
+                        && state.getPlayerDistance(state.getCurrentPlayer()) <= END_GAME_PLAYER_DISTANCE) {
+                    positions.put(name + "-endgame", new State(state));
+                    break;
+                }
+                Move move;
+                if (ply < RANDOM_OPENING_PLIES) {
+                    List<Move> moves = new ArrayList<>(state.getMoves(state.getCurrentPlayer().getPiece()));
+                    move = moves.get(random.nextInt(moves.size()));
+                } else {
+                    move = new Minimax(state).decideMove(new State(state), Mode.NORMAL);
+                }
+                state.movePiece(move);
+                state.changeTurn();
+            }
+        }
+        return positions;
+    }
+}
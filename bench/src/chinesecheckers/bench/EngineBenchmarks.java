@@ -0,0 +1,186 @@
+package chinesecheckers.bench;
+
+import chinesecheckers.ai.AI;
+import chinesecheckers.ai.Minimax;
+import chinesecheckers.ai.Mode;
+import chinesecheckers.ai.MonteCarloTreeSearch;
+import chinesecheckers.ai.SearchStatistics;
+import chinesecheckers.util.BoardShape;
+import chinesecheckers.util.Move;
+import chinesecheckers.util.Piece;
+import chinesecheckers.util.State;
+import chinesecheckers.util.VirtualPosition;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the hot paths of the engine on the fixed {@link BenchPositions}: move generation, copying a state,
+ * applying a move, both as {@link Move} objects and as packed moves, the distance lookups and a decision in every
+ * {@link Mode}.
+ * Decisions search on the benchmark thread, a {@link Mode#TIMED} decision is given a short time budget and
+ * a {@link Mode#MCTS} decision, made by {@link MonteCarloTreeSearch}, a fixed number of playouts.
+ * The opening book and the endgame tablebase take part in decisions when their files exist, so a decision may be
+ * a lookup rather than a search. The {@link DecisionSources} counters report where the moves of a decision
+ * benchmark came from.
+ * Run through {@code gradle :bench:jmh}, which adds the GC profiler.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmarks {
+
+    private static final long TIMED_BUDGET_MILLIS = 50;
+    private static final long MCTS_ITERATIONS = 1000;
+
+    @Param({"star-opening", "star-mid-game", "star-endgame", "square-opening", "square-mid-game", "square-endgame"})
+    public String position;
+
+    private State state;
+    private Piece piece;
+    private List<Move> moves;
+    private int[] packedMoves;
+    private int numPackedMoves;
+    private List<VirtualPosition> piecePositions;
+    private List<VirtualPosition> endZonePositions;
+    private int invocation; // cycles the benchmarks through the moves and positions of the state
+
+    /**
+     * The mode of a decision benchmark.
+     */
+    @org.openjdk.jmh.annotations.State(Scope.Thread)
+    public static class Decision {
+
+        @Param
+        public Mode mode;
+    }
+
+    /**
+     * Counts the decisions of an iteration by the source of their move, as told by the {@link SearchStatistics}.
+     */
+    @org.openjdk.jmh.annotations.State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class DecisionSources {
+
+        public long book;
+        public long tablebase;
+        public long solver;
+        public long search;
+
+        /**
+         * Resets the counters at the start of an iteration.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            book = 0;
+            tablebase = 0;
+            solver = 0;
+            search = 0;
+        }
+    }
+
+    /**
+     * Creates the position the benchmarks run on.
+     */
+    @Setup
+    public void setUp() {
+        state = BenchPositions.create().get(position);
+        piece = state.getCurrentPlayer().getPiece();
+        moves = new ArrayList<>(state.getMoves(piece));
+        packedMoves = new int[state.getMaxNumMoves()];
+        numPackedMoves = state.generateMoves(piece, packedMoves, 0);
+        piecePositions = new ArrayList<>(state.getPositions(piece));
+        endZonePositions = new ArrayList<>(state.getEndZonePositions(piece));
+    }
+
+    @Benchmark
+    public Set<Move> getMoves() {
+        return state.getMoves(piece);
+    }
+
+    @Benchmark
+    public int generateMoves() {
+        return state.generateMoves(piece, packedMoves, 0);
+    }
+
+    @Benchmark
+    public State copy() {
+        return new State(state);
+    }
+
+    @Benchmark
+    public State movePiece() {
+        State copy = new State(state);
+        copy.movePiece(moves.get(invocation++ % moves.size()));
+        return copy;
+    }
+
+    @Benchmark
+    public long makeUnmakeMove() {
+        Move move = moves.get(invocation++ % moves.size());
+        state.makeMove(move);
+        long key = state.getZobristKey();
+        state.unmakeMove(move);
+        return key;
+    }
+
+    @Benchmark
+    public long makeUnmakeMovePacked() {
+        int move = packedMoves[invocation++ % numPackedMoves];
+        state.makeMove(move);
+        long key = state.getZobristKey();
+        state.unmakeMove(move);
+        return key;
+    }
+
+    @Benchmark
+    public int distance() {
+        int i = invocation++;
+        return state.distance(piecePositions.get(i % piecePositions.size()),
+                endZonePositions.get(i / piecePositions.size() % endZonePositions.size()));
+    }
+
+    @Benchmark
+    public int distanceToFreeEndZone() {
+        return state.distanceToFreeEndZone(piece, piecePositions.get(invocation++ % piecePositions.size()));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Move decideMove(Decision decision, DecisionSources sources) {
+        Mode mode = decision.mode;
+        SearchStatistics statistics = SearchStatistics.of(BoardShape.of(state), mode);
+        long bookMoves = statistics.getBookMoves();
+        long tablebaseMoves = statistics.getTablebaseMoves();
+        long solverMoves = statistics.getSolverMoves();
+        AI ai = mode == Mode.MCTS ? new MonteCarloTreeSearch(Long.MAX_VALUE, MCTS_ITERATIONS, null)
+                : new Minimax(state, TIMED_BUDGET_MILLIS, null);
+        Move move = ai.decideMove(new State(state), mode);
+        if (statistics.getBookMoves() > bookMoves) {
+            sources.book++;
+        } else if (statistics.getTablebaseMoves() > tablebaseMoves) {
+            sources.tablebase++;
+        } else if (statistics.getSolverMoves() > solverMoves) {
+            sources.solver++;
+        } else {
+            sources.search++;
+        }
+        return move;
+    }
+}
@@ -0,0 +1,253 @@
+package chinesecheckers.bench;
+
+import chinesecheckers.util.BoardShape;
+import chinesecheckers.util.Move;
+import chinesecheckers.util.PackedMove;
+import chinesecheckers.util.Piece;
+import chinesecheckers.util.Player;
+import chinesecheckers.util.State;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Counts the positions reachable from a {@link State} in a number of plies, as a correctness oracle for move
+ * generation and as a measure of its speed.
+ * Every ply the player to move makes each of its moves and the turn passes to the next player. A position in which
+ * a player has won is a leaf even if plies are left. The positions are either copied for every move, or a single state
+ * is updated with {@link State#makeMove(Move)} and restored with {@link State#unmakeMove(Move)}, or the moves are
+ * {@link PackedMove packed moves} generated into a single buffer; all the paths must count the same leaves.
+ * Usage: {@code Perft <star|square> <players> <depth> [copy|packed] [divide] [parallel]}, counting from the start
+ * position, or {@code Perft verify}, checking every path against the known counts of a few start positions.
+ */
+public class Perft {
+
+    // the known leaf counts of start positions: shape, number of players, depth and leaves
+    private static final Object[][] KNOWN_COUNTS = {
+            {BoardShape.STAR, 2, 3, 4760L},
+            {BoardShape.STAR, 2, 4, 115600L},
+            {BoardShape.SQUARE, 2, 3, 20040L},
+            {BoardShape.STAR, 6, 3, 2828L},
+            {BoardShape.SQUARE, 4, 3, 13920L},
+    };
+
+    /**
+     * Counts the leaves of a start position and prints the count, the time and the speed.
+     * Exits with status 1 if {@code verify} finds a wrong count.
+     * @param args the board shape, the number of players and the depth, optionally followed by {@code copy} to copy
+     *             the positions rather than make and unmake moves, or {@code packed} to make and unmake packed moves,
+     *             {@code divide} to print the count of every root move, and {@code parallel} to count the root moves
+     *             in parallel on the common pool, which packed moves do not; or {@code verify} alone
+     */
+    public static void main(String[] args) {
+        if (args.length == 1 && args[0].equals("verify")) {
+            if (!verify()) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length < 3) {
+            System.out.println("Usage: Perft <star|square> <players> <depth> [copy|packed] [divide] [parallel]");
+            System.out.println("       Perft verify");
+            return;
+        }
+        BoardShape shape = BoardShape.valueOf(args[0].toUpperCase());
+        int numPlayers = Integer.parseInt(args[1]);
+        int depth = Integer.parseInt(args[2]);
+        List<String> options = List.of(args).subList(3, args.length);
+        boolean copy = options.contains("copy");
+        boolean packed = !copy && options.contains("packed");
+        boolean parallel = !packed && options.contains("parallel");
+        State state = startState(shape, numPlayers);
+        long start = System.nanoTime();
+        Map<Move, Long> counts = packed ? packedDivide(state, depth)
+                : parallel ? parallelDivide(state, depth, copy, ForkJoinPool.commonPool()) : divide(state, depth, copy);
+        long nanos = System.nanoTime() - start;
+        long leaves = 0;
+        for (Map.Entry<Move, Long> count : counts.entrySet()) {
+            if (options.contains("divide")) {
+                System.out.printf("%s-%s: %d%n", count.getKey().getOrigin(), count.getKey().getDestination(),
+                        count.getValue());
+            }
+            leaves += count.getValue();
+        }
+        System.out.printf("%s %d players depth %d (%s%s): %d leaves in %.1f ms, %.0f leaves/s%n",
+                shape.name().toLowerCase(), numPlayers, depth, copy ? "copy" : packed ? "packed" : "make/unmake",
+                parallel ? ", parallel" : "", leaves, nanos / 1e6, leaves / (nanos / 1e9));
+    }
+
+    /**
+     * Counts the leaves of the start positions with known counts through every path: make/unmake, copy, packed,
+     * and make/unmake and copy in parallel, and prints a line per position.
+     * A position fails if the count of a path differs from the known count, if the paths do not count the same leaves
+     * for every root move, or if a path does not restore the state.
+     * @return {@code true} if every position passed
+     */
+    public static boolean verify() {
+        boolean passed = true;
+        for (Object[] knownCount : KNOWN_COUNTS) {
+            BoardShape shape = (BoardShape) knownCount[0];
+            int numPlayers = (int) knownCount[1];
+            int depth = (int) knownCount[2];
+            long expectedLeaves = (long) knownCount[3];
+            State state = startState(shape, numPlayers);
+            long key = state.getZobristKey();
+            Map<String, Map<String, Long>> paths = new LinkedHashMap<>();
+            paths.put("make/unmake", byRootMove(divide(state, depth, false)));
+            paths.put("copy", byRootMove(divide(state, depth, true)));
+            paths.put("packed", byRootMove(packedDivide(state, depth)));
+            paths.put("parallel make/unmake",
+                    byRootMove(parallelDivide(state, depth, false, ForkJoinPool.commonPool())));
+            paths.put("parallel copy", byRootMove(parallelDivide(state, depth, true, ForkJoinPool.commonPool())));
+            List<String> failures = new ArrayList<>();
+            if (state.getZobristKey() != key) {
+                failures.add("the state was not restored");
+            }
+            Map<String, Long> reference = paths.get("make/unmake");
+            for (Map.Entry<String, Map<String, Long>> path : paths.entrySet()) {
+                long leaves = path.getValue().values().stream().mapToLong(Long::longValue).sum();
+                if (leaves != expectedLeaves) {
+                    failures.add(path.getKey() + " counted " + leaves);
+                }
+                if (!path.getValue().equals(reference)) {
+                    failures.add(path.getKey() + " disagrees with make/unmake by root move");
+                }
+            }
+            System.out.printf("%s %d players depth %d: %d leaves, %s%n", shape.name().toLowerCase(), numPlayers,
+                    depth, expectedLeaves, failures.isEmpty() ? "ok" : "FAILED: " + String.join(", ", failures));
+            passed &= failures.isEmpty();
+        }
+        return passed;
+    }
+
+    /**
+     * Counts the leaves reachable from a state.
+     * @param state the state to count from, restored on return
+     * @param depth the number of plies
+     * @param copy {@code true} to copy the state for every move, {@code false} to make and unmake moves
+     * @return the number of leaves
+     */
+    public static long perft(State state, int depth, boolean copy) {
+        if (depth == 0 || state.getWinner() != null) {
+            return 1;
+        }
+        long leaves = 0;
+        for (Move move : state.getMoves(state.getCurrentPlayer().getPiece())) {
+            leaves += perft(state, move, depth, copy);
+        }
+        return leaves;
+    }
+
+    /**
+     * Counts the leaves reachable from a state by every root move.
+     * @param state the state to count from, restored on return
+     * @param depth the number of plies, at least 1
+     * @param copy {@code true} to copy the state for every move, {@code false} to make and unmake moves
+     * @return the number of leaves of every root move, in the order the moves are generated
+     */
+    public static Map<Move, Long> divide(State state, int depth, boolean copy) {
+        Map<Move, Long> counts = new LinkedHashMap<>();
+        for (Move move : state.getMoves(state.getCurrentPlayer().getPiece())) {
+            counts.put(move, perft(state, move, depth, copy));
+        }
+        return counts;
+    }
+
+    /**
+     * Counts the leaves reachable from a state by every root move, making and unmaking packed moves.
+     * The moves of every ply are generated into a single buffer, after the moves of the plies above.
+     * @param state the state to count from, restored on return
+     * @param depth the number of plies, at least 1
+     * @return the number of leaves of every root move, in the order the moves are generated
+     */
+    public static Map<Move, Long> packedDivide(State state, int depth) {
+        int[] moves = new int[depth * state.getMaxNumMoves()];
+        int end = state.generateMoves(state.getCurrentPlayer().getPiece(), moves, 0);
+        Map<Move, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < end; i++) {
+            counts.put(state.toMove(moves[i]), perft(state, moves[i], depth, moves, end));
+        }
+        return counts;
+    }
+
+    /**
+     * Counts the leaves reachable from a state by every root move, counting the root moves in parallel.
+     * Every root move is counted on its own copy of the state.
+     * @param state the state to count from, it is not modified
+     * @param depth the number of plies, at least 1
+     * @param copy {@code true} to copy the state for every move, {@code false} to make and unmake moves
+     * @param pool the pool the root moves are counted on
+     * @return the number of leaves of every root move, in the order the moves are generated
+     */
+    public static Map<Move, Long> parallelDivide(State state, int depth, boolean copy, ForkJoinPool pool) {
+        List<Move> moves = new ArrayList<>(state.getMoves(state.getCurrentPlayer().getPiece()));
+        List<ForkJoinTask<Long>> tasks = new ArrayList<>();
+        for (Move move : moves) {
+            tasks.add(pool.submit(() -> perft(new State(state), move, depth, copy)));
+        }
+        Map<Move, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < moves.size(); i++) {
+            counts.put(moves.get(i), tasks.get(i).join());
+        }
+        return counts;
+    }
+
+    // keys the counts of root moves by their origin and destination, as the paths create different Move objects
+    private static Map<String, Long> byRootMove(Map<Move, Long> counts) {
+        Map<String, Long> countsByRootMove = new LinkedHashMap<>();
+        for (Map.Entry<Move, Long> count : counts.entrySet()) {
+            countsByRootMove.put(count.getKey().getOrigin() + "-" + count.getKey().getDestination(), count.getValue());
+        }
+        return countsByRootMove;
+    }
+
+    // creates the start position of a game of numPlayers on shape
+    private static State startState(BoardShape shape, int numPlayers) {
+        ArrayList<Player> players = new ArrayList<>();
+        for (Piece piece : shape.getPieces(numPlayers)) {
+            players.add(new Player(piece, false));
+        }
+        return shape.createState(players);
+    }
+
+    // counts the leaves reachable by move from state in depth plies, move included
+    private static long perft(State state, Move move, int depth, boolean copy) {
+        if (copy) {
+            State child = new State(state, move);
+            if (child.getWinner() == null) {
+                child.changeTurn();
+            }
+            return perft(child, depth - 1, true);
+        }
+        state.makeMove(move);
+        if (state.getWinner() == null) {
+            state.changeTurn();
+        }
+        long leaves = perft(state, depth - 1, false);
+        state.unmakeMove(move);
+        return leaves;
+    }
+
+    // counts the leaves reachable by the packed move from state in depth plies, move included,
+    // generating the moves of the next ply into moves from offset
+    private static long perft(State state, int move, int depth, int[] moves, int offset) {
+        state.makeMove(move);
+        long leaves = 1;
+        if (state.getWinner() == null) {
+            state.changeTurn();
+            if (depth > 1) {
+                int end = state.generateMoves(state.getCurrentPlayer().getPiece(), moves, offset);
+                leaves = 0;
+                for (int i = offset; i < end; i++) {
+                    leaves += perft(state, moves[i], depth - 1, moves, end);
+                }
+            }
+        }
+        state.unmakeMove(move);
+        return leaves;
+    }
+}
@@ -0,0 +1,190 @@
+package chinesecheckers;
+
+import chinesecheckers.ai.AI;
+import chinesecheckers.ai.Minimax;
+import chinesecheckers.ai.Mode;
+import chinesecheckers.ai.MonteCarloTreeSearch;
+import chinesecheckers.util.BoardShape;
+import chinesecheckers.util.Move;
+import chinesecheckers.util.Piece;
+import chinesecheckers.util.Player;
+import chinesecheckers.util.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays complete AI versus AI games without a UI, in parallel, and reports their throughput and results.
+ * Every game searches its moves on a single thread, so the games rather than the root moves are spread over the cores.
+ * {@link Mode#MCTS} players search with {@link MonteCarloTreeSearch} for the same time budget as {@link Mode#TIMED}
+ * players, the others with {@link Minimax}.
+ * Since {@link Minimax} is deterministic, each game opens with a few random moves drawn from its own seed,
+ * and the modes are rotated between the seats from game to game so every mode plays every seat.
+ * A player that decides no move passes its turn, as on the board. A game is blocked when every player passes in a row,
+ * and stalls when no player wins within a ply limit.
+ */
+public class Tournament {
+
+    private static final int RANDOM_OPENING_PLIES = 4;
+    private static final int MAX_PLIES = 1000;
+    private static final long TIMED_BUDGET_MILLIS = 1000;
+    private static final long SEED = 1;
+
+    /**
+     * Plays the games of every board shape and mode mix given, one mix after the other.
+     * @param args the number of games per mix, the number of threads, and one or more mixes written as
+     *             {@code <star|square>:<mode>,<mode>[,...]} with a mode per player, for example {@code star:HARD,NORMAL}
+     * @throws InterruptedException if interrupted while waiting for the games
+     * @throws ExecutionException if a game failed
+     */
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        if (args.length < 3) {
+            System.out.println("Usage: Tournament <games> <threads> <star|square>:<mode>,<mode>[,...] ...");
+            return;
+        }
+        int numGames = Integer.parseInt(args[0]);
+        int numThreads = Integer.parseInt(args[1]);
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            for (int i = 2; i < args.length; i++) {
+                String[] mix = args[i].split(":");
+                BoardShape shape = BoardShape.valueOf(mix[0].toUpperCase());
+                Mode[] modes = Arrays.stream(mix[1].split(",")).map(mode -> Mode.valueOf(mode.toUpperCase()))
+                        .toArray(Mode[]::new);
+                if (Arrays.stream(shape.getNumPlayersOptions()).noneMatch(numPlayers -> numPlayers == modes.length)) {
+                    throw new IllegalArgumentException(shape + " does not allow " + modes.length + " players");
+                }
+                play(executor, shape, modes, numGames);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // plays numGames games of a mix on executor and prints their report
+    private static void play(ExecutorService executor, BoardShape shape, Mode[] modes, int numGames)
+            throws InterruptedException, ExecutionException {
+        long start = System.nanoTime();
+        List<Future<GameResult>> futures = new ArrayList<>();
+        for (int game = 0; game < numGames; game++) {
+            int gameIndex = game;
+            futures.add(executor.submit(() -> playGame(shape, modes, gameIndex)));
+        }
+        List<GameResult> results = new ArrayList<>();
+        for (Future<GameResult> future : futures) {
+            results.add(future.get());
+        }
+        report(shape, modes, results, System.nanoTime() - start);
+    }
+
+    // plays a single game, the modes rotated by the game index
+    private static GameResult playGame(BoardShape shape, Mode[] modes, int game) {
+        List<Piece> pieces = shape.getPieces(modes.length);
+        ArrayList<Player> players = new ArrayList<>();
+        for (int seat = 0; seat < modes.length; seat++) {
+            Player player = new Player(pieces.get(seat), false);
+            player.setMode(modes[(seat + game) % modes.length]);
+            players.add(player);
+        }
+        State state = shape.createState(players);
+        Random random = new Random(SEED * 31 + game);
+        GameResult result = new GameResult();
+        int numPassedTurns = 0; // the turns passed in a row
+        for (int ply = 0; ply < MAX_PLIES && state.getWinner() == null; ply++) {
+            Player player = state.getCurrentPlayer();
+            Move move;
+            if (ply < RANDOM_OPENING_PLIES) {
+                List<Move> moves = new ArrayList<>(state.getMoves(player.getPiece()));
+                move = moves.isEmpty() ? null : moves.get(random.nextInt(moves.size()));
+            } else {
+                long decisionStart = System.nanoTime();
+                AI ai = player.getMode() == Mode.MCTS
+                        ? new MonteCarloTreeSearch(TIMED_BUDGET_MILLIS, Long.MAX_VALUE, null)
+                        : new Minimax(state, TIMED_BUDGET_MILLIS, null);
+                move = ai.decideMove(new State(state), player.getMode());
+                result.decisionNanos += System.nanoTime() - decisionStart;
+                result.numDecisions++;
+            }
+            if (move == null) { // no move was decided, the player passes
+                result.numPasses++;
+                if (++numPassedTurns == modes.length) {
+                    result.blocked = true;
+                    break;
+                }
+                state.changeTurn();
+                continue;
+            }
+            numPassedTurns = 0;
+            state.movePiece(move);
+            result.numPlies++;
+            if (state.getWinner() == null) {
+                state.changeTurn();
+            }
+        }
+        result.winner = state.getWinner();
+        return result;
+    }
+
+    // prints the throughput of the games of a mix and the win rates by mode and by seat
+    private static void report(BoardShape shape, Mode[] modes, List<GameResult> results, long elapsedNanos) {
+        long numPlies = 0;
+        long numDecisions = 0;
+        long decisionNanos = 0;
+        long numPasses = 0;
+        int numBlocked = 0;
+        int numStalled = 0;
+        Map<Mode, Integer> modeWins = new LinkedHashMap<>();
+        Map<Piece, Integer> seatWins = new LinkedHashMap<>();
+        for (Mode mode : modes) {
+            modeWins.put(mode, 0);
+        }
+        for (Piece piece : shape.getPieces(modes.length)) {
+            seatWins.put(piece, 0);
+        }
+        for (GameResult result : results) {
+            numPlies += result.numPlies;
+            numDecisions += result.numDecisions;
+            decisionNanos += result.decisionNanos;
+            numPasses += result.numPasses;
+            if (result.blocked) {
+                numBlocked++;
+            } else if (result.winner == null) {
+                numStalled++;
+            } else {
+                modeWins.merge(result.winner.getMode(), 1, Integer::sum);
+                seatWins.merge(result.winner.getPiece(), 1, Integer::sum);
+            }
+        }
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%s %s: %d games in %.1f s, %.2f games/s (%.0f games/h), %.1f moves/s, "
+                        + "%.2f ms/decision, %d passes, %d blocked, %d stalled%n",
+                shape.name().toLowerCase(), Arrays.toString(modes), results.size(), seconds,
+                results.size() / seconds, results.size() / seconds * 3600, numPlies / seconds,
+                numDecisions == 0 ? 0 : decisionNanos / 1e6 / numDecisions, numPasses, numBlocked, numStalled);
+        StringBuilder modeRates = new StringBuilder("  wins by mode:");
+        modeWins.forEach((mode, wins) -> modeRates.append(String.format(" %s %.1f%%", mode, 100.0 * wins / results.size())));
+        System.out.println(modeRates);
+        StringBuilder seatRates = new StringBuilder("  wins by seat:");
+        seatWins.forEach((piece, wins) -> seatRates.append(String.format(" %s %.1f%%", piece, 100.0 * wins / results.size())));
+        System.out.println(seatRates);
+    }
+
+    // the outcome of a single game
+    private static class GameResult {
+
+        private Player winner; // null if the game was blocked or stalled
+        private boolean blocked; // every player passed in a row
+        private int numPasses;
+        private int numPlies;
+        private int numDecisions;
+        private long decisionNanos;
+    }
+}
@@ -15,4 +15,10 @@ public interface AI {
      * @return the move chosen
      */
     Move decideMove(State state, Mode mode);
+
+    /**
+     * Asks a decision running on another thread to stop as soon as possible, after which it returns {@code null}.
+     * The AI stays cancelled, so later decisions return {@code null} at once.
+     */
+    void cancel();
 }
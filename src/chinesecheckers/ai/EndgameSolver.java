@@ -0,0 +1,151 @@
+package chinesecheckers.ai;
+
+import chinesecheckers.util.Move;
+import chinesecheckers.util.Piece;
+import chinesecheckers.util.Player;
+import chinesecheckers.util.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds the shortest way for a player to win when the other players' pieces are assumed not to move,
+ * based on the IDA* algorithm.
+ * The lower bound of the number of moves left is the number of free positions in the player's end zone,
+ * since a move fills at most one of them. Positions are identified by their {@link State#getZobristKey() Zobrist key}
+ * in a closed set, so a position reached again with at least as many moves in the same iteration is not expanded.
+ * The search gives up once a node budget is spent.
+ */
+final class EndgameSolver {
+
+    private static final int FOUND = -1; // returned by search once a win is found
+    private static final int CLOSED_SET_SIZE_LOG2 = 16;
+    private static final int MAX_CLOSED_SET_PROBES = 8;
+    private static final int MAX_SOLUTION_LENGTH = Byte.MAX_VALUE - 1;
+
+    private final long nodeBudget;
+    private final long[] closedKeys = new long[1 << CLOSED_SET_SIZE_LOG2];
+    private final byte[] closedDepths = new byte[1 << CLOSED_SET_SIZE_LOG2]; // depth + 1 of each key, 0 if empty
+    private long nodes; // the number of positions expanded so far
+    private Move firstMove; // the first move of the solution found
+
+    /**
+     * Creates a solver.
+     * @param nodeBudget the number of positions the solver may expand before giving up
+     */
+    EndgameSolver(long nodeBudget) {
+        this.nodeBudget = nodeBudget;
+    }
+
+    /**
+     * Searches for the shortest sequence of moves of the player that wins the game, by deepening the bound of the
+     * number of moves until a win is found.
+     * @param state the state to solve, it is modified during the search and restored on return
+     * @param player the player to move
+     * @return the first move of a shortest winning sequence, or {@code null} if the player has already won
+     *         or no win was found within the node budget
+     */
+    Move solve(State state, Player player) {
+        if (state.isWinner(player)) {
+            return null;
+        }
+        nodes = 0;
+        firstMove = null;
+        int bound = state.getNumFreeEndZonePositions(player.getPiece());
+        while (bound <= MAX_SOLUTION_LENGTH && nodes <= nodeBudget) {
+            Arrays.fill(closedDepths, (byte) 0);
+            int result = search(state, player, 0, bound);
+            if (result == FOUND) {
+                return firstMove;
+            }
+            if (result == Integer.MAX_VALUE) { // no position exceeded the bound, there is no win
+                return null;
+            }
+            bound = result;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of positions expanded by the last call to {@link #solve(State, Player)}.
+     * @return the number of positions expanded
+     */
+    long getNodes() {
+        return nodes;
+    }
+
+    // * searches the positions reachable from state within bound moves in total, depth of which were already made.
+    // * returns FOUND if a win was found, and sets firstMove at depth 0. otherwise returns the lowest estimate
+    //   of the total number of moves that exceeded bound, Integer.MAX_VALUE if there is none or the budget is spent.
+    private int search(State state, Player player, int depth, int bound) {
+        int estimate = depth + state.getNumFreeEndZonePositions(player.getPiece());
+        if (estimate > bound) {
+            return estimate;
+        }
+        if (state.isWinner(player)) {
+            return FOUND;
+        }
+        if (++nodes > nodeBudget || !visit(state.getZobristKey(), depth)) {
+            return Integer.MAX_VALUE;
+        }
+        int nextBound = Integer.MAX_VALUE;
+        for (Move move : orderMoves(state, player.getPiece())) {
+            state.makeMove(move);
+            int result = search(state, player, depth + 1, bound);
+            state.unmakeMove(move);
+            if (result == FOUND) {
+                if (depth == 0) {
+                    firstMove = move;
+                }
+                return FOUND;
+            }
+            if (nodes > nodeBudget) {
+                return Integer.MAX_VALUE;
+            }
+            nextBound = Math.min(nextBound, result);
+        }
+        return nextBound;
+    }
+
+    // * records that the position with key was reached after depth moves in the current iteration.
+    // * returns false if it was already reached with at most depth moves, so expanding it again cannot find a
+    //   shorter win. if the slots around key are all taken the position is expanded without being recorded.
+    private boolean visit(long key, int depth) {
+        int indexMask = closedKeys.length - 1;
+        int index = (int) key & indexMask;
+        for (int probe = 0; probe < MAX_CLOSED_SET_PROBES; probe++, index = (index + 1) & indexMask) {
+            if (closedDepths[index] == 0) {
+                closedKeys[index] = key;
+                closedDepths[index] = (byte) (depth + 1);
+                return true;
+            }
+            if (closedKeys[index] == key) {
+                if (closedDepths[index] <= depth + 1) {
+                    return false;
+                }
+                closedDepths[index] = (byte) (depth + 1);
+                return true;
+            }
+        }
+        return true;
+    }
+
+    // returns the moves of piece, the moves covering the most distance to the free end zone first
+    private static List<Move> orderMoves(State state, Piece piece) {
+        List<Move> moves = new ArrayList<>(state.getMoves(piece));
+        long[] keys = new long[moves.size()];
+        for (int i = 0; i < keys.length; i++) {
+            Move move = moves.get(i);
+            long delta = (long) state.distanceToFreeEndZone(piece, move.getDestination())
+                    - state.distanceToFreeEndZone(piece, move.getOrigin());
+            keys[i] = delta << Integer.SIZE | i;
+        }
+        Arrays.sort(keys);
+        List<Move> orderedMoves = new ArrayList<>(keys.length);
+        for (long key : keys) {
+            orderedMoves.add(moves.get((int) key));
+        }
+        return orderedMoves;
+    }
+}
@@ -0,0 +1,91 @@
+package chinesecheckers.ai;
+
+import chinesecheckers.util.Move;
+import chinesecheckers.util.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Represents a multithreaded {@link Minimax} AI based on the lazy SMP scheme.
+ * The main searcher runs on the calling thread exactly as a single {@link Minimax} decision does, while helper threads
+ * search the same position at staggered depths. All the searchers share a single lock-free transposition table,
+ * so the results of the helpers cut the search of the main searcher short.
+ * The helpers are stopped once the main searcher decides, and the move of the deepest tree completed by any
+ * searcher is returned. The decided move therefore depends on thread timing.
+ */
+public class LazySmp implements AI {
+
+    private static final int TRANSPOSITION_TABLE_SIZE_LOG2 = 20;
+    private static final long TIMED_BUDGET_MILLIS = 1000;
+
+    private final State state;
+    private final int numHelpers;
+    private final long timeBudgetMillis;
+    private final ForkJoinPool pool;
+    private final AtomicBoolean cancelled = new AtomicBoolean(); // shared by all the searchers
+
+    /**
+     * Creates a lazy SMP AI tuned to the given state of the game, with a helper per thread of the common pool.
+     * @param state the state the AI is based on.
+     */
+    public LazySmp(State state) {
+        this(state, ForkJoinPool.getCommonPoolParallelism(), TIMED_BUDGET_MILLIS, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a lazy SMP AI tuned to the given state of the game.
+     * @param state the state the AI is based on.
+     * @param numHelpers the number of helper searches run alongside the main search.
+     * @param timeBudgetMillis the time in milliseconds a {@link Mode#TIMED} decision may spend deepening its search.
+     * @param pool the pool the helpers run on.
+     */
+    public LazySmp(State state, int numHelpers, long timeBudgetMillis, ForkJoinPool pool) {
+        this.state = state;
+        this.numHelpers = numHelpers;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.pool = pool;
+    }
+
+    /**
+     * Takes the current game {@link State} and chooses a move for the current player
+     * according to the {@link Mode} specified, searching with the main searcher and the helpers.
+     * @param state Represents the state upon which to decide AI move
+     * @param mode Represents the quality of the move to be decided
+     * @return Move object representing the decided move
+     * @see Minimax#decideMove(State, Mode)
+     */
+    @Override
+    public Move decideMove(State state, Mode mode) {
+        TranspositionTable transpositionTable = new TranspositionTable(TRANSPOSITION_TABLE_SIZE_LOG2);
+        AtomicBoolean stop = new AtomicBoolean();
+        List<Minimax> helpers = new ArrayList<>();
+        List<ForkJoinTask<Move>> helperMoves = new ArrayList<>();
+        for (int i = 1; i <= numHelpers; i++) {
+            Minimax helper = new Minimax(this.state, timeBudgetMillis, transpositionTable, stop, cancelled, i);
+            helpers.add(helper);
+            State helperState = new State(state); // copied here, as the main search writes the scratch of state
+            helperMoves.add(pool.submit(() -> helper.decideMove(helperState, mode)));
+        }
+        Minimax main = new Minimax(this.state, timeBudgetMillis, transpositionTable, null, cancelled, 0);
+        Move decidedMove = main.decideMove(state, mode);
+        int decidedDepth = main.getCompletedDepth();
+        stop.set(true);
+        for (int i = 0; i < numHelpers; i++) {
+            Move helperMove = helperMoves.get(i).join();
+            if (helperMove != null && helpers.get(i).getCompletedDepth() > decidedDepth) {
+                decidedMove = helperMove;
+                decidedDepth = helpers.get(i).getCompletedDepth();
+            }
+        }
+        return cancelled.get() ? null : decidedMove;
+    }
+
+    @Override
+    public void cancel() {
+        cancelled.set(true);
+    }
+}
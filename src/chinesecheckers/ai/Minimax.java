@@ -1,5 +1,8 @@
 package chinesecheckers.ai;
 
+import chinesecheckers.util.BoardShape;
+import chinesecheckers.util.EndgameTablebase;
+import chinesecheckers.util.OpeningBook;
 import chinesecheckers.util.VirtualPosition;
 import chinesecheckers.util.State;
 import chinesecheckers.util.Move;
@@ -7,15 +10,25 @@ import chinesecheckers.util.Piece;
 import chinesecheckers.util.Player;
 
 import java.util.Set;
-import java.util.HashSet;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
- * Represents a deterministic AI based on the Minimax algorithm with a randomized final tie breaker.
+ * Represents a deterministic AI based on the Minimax algorithm.
+ * The root moves are searched in parallel on a {@link ForkJoinPool}, and the decided move does not depend on
+ * the number of threads of the pool. Without a pool the search may use results of deeper searches of a position,
+ * and may decide another move.
  */
 public class Minimax implements AI {
 
@@ -31,19 +44,128 @@ public class Minimax implements AI {
     private static final int NUM_FILTERED_MOVES_NORMAL = 2;
     private static final int NUM_FILTERED_MOVES_HARD = 8;
     private static final int NUM_FILTERED_MOVES_END_GAME = 12;
+    private static final int TRANSPOSITION_TABLE_SIZE_LOG2 = 16;
+    private static final long TIMED_BUDGET_MILLIS = 1000;
+    private static final int MAX_TIMED_DECISION_TREE_DEPTH = 64;
+    private static final long END_GAME_SOLVER_NODE_BUDGET = 20000;
+    private static final int NUM_KILLER_MOVES = 2;
+    private static final int HISTORY_SIZE = 1 << 16; // indexed by the origin and destination indices, each fits a byte
+    private static final int SORT_KEY_FIELD_BITS = 12;
+    private static final int SORT_KEY_FIELD_BIAS = 1 << (SORT_KEY_FIELD_BITS - 1);
+    private static final int SORT_KEY_INDEX_BITS = 15;
 
     private final State state;
     private final boolean midGame;
     private final Player leadingOpponent;
+    private int decisionTreeDepth; // the depth of the tree generated by the current decision
+    private Move decidedMove; // the root move chosen by the current decision
+    private TranspositionTable transpositionTable; // the results of positions searched by the current decision
+    private final long timeBudgetMillis;
+    private final ForkJoinPool pool; // searches the root moves in parallel, null to search them on the calling thread
+    private long deadline; // the System.nanoTime() at which the current timed iteration is abandoned
+    private boolean timedOut; // set when the current iteration passed the deadline, its results are then discarded
+    private Move previousMove; // the root move chosen by the previous iteration, expanded first
+    private int completedDepth; // the depth of the deepest tree completed by the current decision
+    private final TranspositionTable sharedTranspositionTable; // shared by the searchers of a lazy SMP decision
+    private final AtomicBoolean stop; // set when a lazy SMP helper must abandon its search, null if not a helper
+    private final AtomicBoolean cancelled; // set when the decision is cancelled, shared by all its searchers
+    private final int helperIndex; // the index of a lazy SMP helper, staggering its depths
+    private final int[][] killerMoves = new int[MAX_TIMED_DECISION_TREE_DEPTH + 2][NUM_KILLER_MOVES]; // by height
+    private final int[] history = new int[HISTORY_SIZE]; // how much each move caused cutoffs in the current decision
+    private final boolean exactDepthHits; // only use table results of the same depth, so values do not depend on timing
+    // the workers of the root moves of the current decision by move key, kept across its iterations
+    private final Map<Integer, Minimax> rootMoveWorkers = new HashMap<>();
+    private SearchStatistics statistics; // the counters of the current decision
+    // the counts of this searcher, added to statistics and cleared once its search is done
+    private long nodesExpanded;
+    private long movesGenerated;
+    private long stateCopies;
+    private long evaluations;
+    private long cutoffs;
+    private long transpositionProbes;
+    private long transpositionHits;
 
     /**
      * Creates a Minimax AI tuned to the given state of the game.
      * @param state the state the Minimax is based on.
      */
     public Minimax(State state) {
+        this(state, TIMED_BUDGET_MILLIS);
+    }
+
+    /**
+     * Creates a Minimax AI tuned to the given state of the game, with the time budget of a {@link Mode#TIMED} decision.
+     * @param state the state the Minimax is based on.
+     * @param timeBudgetMillis the time in milliseconds a {@link Mode#TIMED} decision may spend deepening its search.
+     */
+    public Minimax(State state, long timeBudgetMillis) {
+        this(state, timeBudgetMillis, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a Minimax AI tuned to the given state of the game, searching the root moves on the given pool.
+     * @param state the state the Minimax is based on.
+     * @param timeBudgetMillis the time in milliseconds a {@link Mode#TIMED} decision may spend deepening its search.
+     * @param pool the pool the root moves are searched on, or {@code null} to search them on the calling thread.
+     */
+    public Minimax(State state, long timeBudgetMillis, ForkJoinPool pool) {
+        this.state = state;
+        this.midGame = isMidGame();
+        this.leadingOpponent = leadingOpponent();
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.pool = pool;
+        this.sharedTranspositionTable = null;
+        this.stop = null;
+        this.cancelled = new AtomicBoolean();
+        this.helperIndex = 0;
+        this.exactDepthHits = pool != null;
+    }
+
+    /**
+     * Creates a searcher of a {@link LazySmp} decision, searching on the calling thread.
+     * @param state the state the Minimax is based on.
+     * @param timeBudgetMillis the time in milliseconds a {@link Mode#TIMED} decision may spend deepening its search.
+     * @param transpositionTable the table shared by all the searchers of the decision.
+     * @param stop the flag that ends the search of a helper, or {@code null} for the main searcher.
+     * @param cancelled the flag that cancels the decision, shared by all the searchers.
+     * @param helperIndex the index of a helper, helpers with an odd index start one level deeper.
+     */
+    Minimax(State state, long timeBudgetMillis, TranspositionTable transpositionTable, AtomicBoolean stop,
+            AtomicBoolean cancelled, int helperIndex) {
         this.state = state;
         this.midGame = isMidGame();
         this.leadingOpponent = leadingOpponent();
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.pool = null;
+        this.sharedTranspositionTable = transpositionTable;
+        this.stop = stop;
+        this.cancelled = cancelled;
+        this.helperIndex = helperIndex;
+        this.exactDepthHits = false;
+    }
+
+    // * creates a worker searching a single root move of the current decision of root
+    // * it has its own transposition table, killer moves and history, kept across the iterations of the decision
+    private Minimax(Minimax root) {
+        this.state = root.state;
+        this.midGame = root.midGame;
+        this.leadingOpponent = root.leadingOpponent;
+        this.timeBudgetMillis = root.timeBudgetMillis;
+        this.pool = null;
+        this.sharedTranspositionTable = null;
+        this.stop = root.stop;
+        this.cancelled = root.cancelled;
+        this.helperIndex = root.helperIndex;
+        this.exactDepthHits = root.exactDepthHits;
+        this.statistics = root.statistics;
+        this.transpositionTable = new TranspositionTable(TRANSPOSITION_TABLE_SIZE_LOG2);
+    }
+
+    // prepares a root move worker for the current iteration of root
+    private void startIteration(Minimax root) {
+        decisionTreeDepth = root.decisionTreeDepth;
+        deadline = root.deadline;
+        timedOut = false;
     }
 
     /**
@@ -53,15 +175,77 @@ public class Minimax implements AI {
      * and minimizing the leading opponent's winning chance.
      * The algorithm also checks for additional boundary cases which are not included in the traditional Minimax,
      * to optimize choice quality.
+     * In {@link Mode#TIMED} the search is deepened one level at a time until the time budget is spent,
+     * and the move chosen by the deepest search that completed is returned.
+     * In {@link Mode#HARD} and {@link Mode#TIMED} the board's {@link OpeningBook} is consulted first,
+     * and the move it holds for the position is returned.
+     * Once the board's {@link EndgameTablebase} covers the player's pieces in a two player game, the move it rates
+     * closest to a win is returned.
+     * Near the end of the game the shortest finish is searched for first, assuming the other players do not move,
+     * and is returned if found within a node budget.
+     * A helper of a {@link LazySmp} decision deepens its search in every mode, one level past the mode's depth,
+     * until it is stopped.
+     * The decision is counted by the {@link SearchStatistics} of the mode and the board shape.
+     * A cancelled decision returns {@code null} and is not counted.
      * @param state Represents the state upon which to decide AI move
      * @param mode Represents the quality of the move to be decided
      * @return Move object representing the decided move
      */
     @Override
     public Move decideMove(State state, Mode mode) {
-        DecisionTreeNode root = new DecisionTreeNode(state, state.getCurrentPlayer().getPiece());
+        statistics = SearchStatistics.of(BoardShape.of(state), mode);
+        long start = System.nanoTime();
+        Move move = decide(state, mode);
+        addCounts(this);
+        if (cancelled.get()) {
+            return null;
+        }
+        if (stop == null) { // the helpers of a lazy SMP decision are counted with the decision of the main searcher
+            statistics.recordDecision(System.nanoTime() - start, completedDepth);
+        }
+        return move;
+    }
+
+    // decides a move as described by decideMove
+    private Move decide(State state, Mode mode) {
+        if (stop == null && (mode == Mode.HARD || mode == Mode.TIMED)) {
+            OpeningBook openingBook = OpeningBook.of(state);
+            Move bookMove = openingBook == null ? null : openingBook.getMove(state);
+            if (bookMove != null) {
+                statistics.bookMoves.increment();
+                completedDepth = Integer.MAX_VALUE; // the book move was decided by a search of its own
+                return bookMove;
+            }
+        }
+        Piece piece = state.getCurrentPlayer().getPiece();
+        EndgameTablebase tablebase = stop == null ? coveringTablebase(state, piece) : null;
+        if (tablebase != null) { // copied only once the tablebase may cover the position
+            stateCopies++;
+            Move tablebaseMove = tablebaseMove(tablebase, new State(state), piece);
+            if (tablebaseMove != null) {
+                statistics.tablebaseMoves.increment();
+                // the tablebase distance is a race distance that ignores the other pieces, a lower bound on the
+                // finish rather than an exact value, but the move is still preferred over the move of any tree
+                completedDepth = Integer.MAX_VALUE;
+                return tablebaseMove;
+            }
+        }
         boolean endGame = isEndGame();
-        int decisionTreeDepth;
+        if (endGame && stop == null) {
+            EndgameSolver solver = new EndgameSolver(END_GAME_SOLVER_NODE_BUDGET);
+            stateCopies++;
+            Move finishingMove = solver.solve(new State(state), state.getCurrentPlayer());
+            nodesExpanded += solver.getNodes();
+            if (finishingMove != null) {
+                statistics.solverMoves.increment();
+                completedDepth = Integer.MAX_VALUE; // a shortest finish is better than the move of any tree
+                return finishingMove;
+            }
+        }
+        if (mode == Mode.TIMED) {
+            return decideTimedMove(state, endGame ? Mode.ENDGAME : Mode.TIMED, endGame,
+                    firstDepth(), MAX_TIMED_DECISION_TREE_DEPTH);
+        }
         if (endGame) { // near end of game more resources are needed
             decisionTreeDepth = END_GAME_DECISION_TREE_DEPTH;
             mode = Mode.ENDGAME;
@@ -73,69 +257,402 @@ public class Minimax implements AI {
         } else {
             decisionTreeDepth = EASY_DECISION_TREE_DEPTH;
         }
-        generateDecisionTree(root, state.getCurrentPlayer().getPiece(),
-                decisionTreeDepth, mode, endGame, blockingPositions());
-        // chosen move is in one of the root children, find it in the child with the same heuristic
-        // value as the root
-        for (DecisionTreeNode child : root.children) { // finish the algorithm by choosing the correct move
-            if (child.heuristicValue == root.heuristicValue) {
-                return child.lastMove;
+        if (stop != null) {
+            return decideTimedMove(state, mode, endGame, firstDepth(), decisionTreeDepth + 1);
+        }
+        decidedMove = null;
+        previousMove = null;
+        clearMoveOrdering();
+        timedOut = false;
+        deadline = Long.MAX_VALUE;
+        transpositionTable = newTranspositionTable();
+        rootMoveWorkers.clear();
+        generateRootDecisionTree(state, state.getCurrentPlayer().getPiece(), mode, endGame, blockingPositions());
+        completedDepth = decisionTreeDepth;
+        return decidedMove;
+    }
+
+    @Override
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    /**
+     * Gets the depth of the deepest tree completed by the last decision.
+     * @return the depth of the tree the last decided move was chosen by, 0 if no tree was completed
+     */
+    int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    // forgets the killer moves and the history of the previous decision
+    private void clearMoveOrdering() {
+        for (int[] killers : killerMoves) {
+            Arrays.fill(killers, 0);
+        }
+        Arrays.fill(history, 0);
+    }
+
+    // * adds the counts of searcher to the statistics of the current decision and clears them
+    // * the counts of a root move worker are added once its task was joined
+    private void addCounts(Minimax searcher) {
+        statistics.nodesExpanded.add(searcher.nodesExpanded);
+        statistics.movesGenerated.add(searcher.movesGenerated);
+        statistics.stateCopies.add(searcher.stateCopies);
+        statistics.evaluations.add(searcher.evaluations);
+        statistics.cutoffs.add(searcher.cutoffs);
+        statistics.transpositionProbes.add(searcher.transpositionProbes);
+        statistics.transpositionHits.add(searcher.transpositionHits);
+        searcher.nodesExpanded = 0;
+        searcher.movesGenerated = 0;
+        searcher.stateCopies = 0;
+        searcher.evaluations = 0;
+        searcher.cutoffs = 0;
+        searcher.transpositionProbes = 0;
+        searcher.transpositionHits = 0;
+    }
+
+    // returns the table shared by a lazy SMP decision, or else a new table for the decision
+    private TranspositionTable newTranspositionTable() {
+        if (sharedTranspositionTable != null) {
+            return sharedTranspositionTable;
+        }
+        return new TranspositionTable(TRANSPOSITION_TABLE_SIZE_LOG2);
+    }
+
+    // returns the depth iterative deepening starts at, staggered between lazy SMP helpers
+    private int firstDepth() {
+        return 1 + helperIndex % 2;
+    }
+
+    // checks whether the current search passed its deadline, was stopped or was cancelled
+    private boolean isTimedOut() {
+        return (deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0) || (stop != null && stop.get())
+                || cancelled.get();
+    }
+
+    // * iterative deepening: generates decision trees of depth firstDepth, firstDepth + 1, ..., lastDepth until the
+    //   time budget is spent and returns the move decided by the deepest tree that was completed.
+    // * the first tree is always completed unless the search is stopped or cancelled, so the main searcher decides
+    //   a move even if the budget is too small for it.
+    // * the transposition tables, the killer moves and the history are kept between iterations, so each iteration
+    //   expands first the best moves found by the previous one, and the previously decided root move is the first
+    //   root move expanded.
+    private Move decideTimedMove(State state, Mode mode, boolean endGame, int firstDepth, int lastDepth) {
+        Piece piece = state.getCurrentPlayer().getPiece();
+        List<VirtualPosition> blockingPositions = blockingPositions();
+        long start = System.nanoTime();
+        transpositionTable = newTranspositionTable();
+        rootMoveWorkers.clear();
+        previousMove = null;
+        completedDepth = 0;
+        clearMoveOrdering();
+        timedOut = false;
+        deadline = Long.MAX_VALUE; // the first iteration always completes
+        for (int depth = firstDepth; depth <= lastDepth; depth++) {
+            decisionTreeDepth = depth;
+            decidedMove = null;
+            int value = generateRootDecisionTree(state, piece, mode, endGame, blockingPositions);
+            if (timedOut) {
+                break;
+            }
+            previousMove = decidedMove;
+            completedDepth = depth;
+            if (value < winValue(state, 0)) { // a win is guaranteed, deeper trees will not change the decision
+                break;
+            }
+            deadline = start + timeBudgetMillis * 1_000_000;
+            if (System.nanoTime() - deadline >= 0) {
+                break;
             }
         }
-        // couldn't find a matching child, this means logical error in the algorithm, shouldn't ever get here
-        return null;
+        return previousMove;
     }
 
-    // * generates a Minimax decision tree rooted at the DecisionNodeTree root parameter.
+    // * generates a Minimax decision tree of depth decisionTreeDepth rooted at the state parameter,
+    //   sets decidedMove and returns the heuristic value of the root. state is not modified.
+    // * without a pool the whole tree is walked on a single copy of state, applying and undoing moves in place.
+    // * with a pool each root move is searched by a worker on its own copy of state. the worker of a root move keeps
+    //   its transposition table, killer moves and history across the iterations of the decision, and only uses table
+    //   results of the same depth, so the value it finds does not depend on the bounds it was searched with before.
+    //   the best (value, move index) found so far is shared between the workers and bounds the search of every
+    //   other root move: a move ordered before the best move is only searched exactly if its value is at most the
+    //   best value, and a move ordered after it only if its value is less than the best value.
+    //   the decided move is therefore the first move with the lowest value in the root order, as in the sequential
+    //   search, whatever the number of threads and the order in which the workers finish.
+    private int generateRootDecisionTree(State state, Piece piece, Mode mode, boolean endGame,
+                                         List<VirtualPosition> blockingPositions) {
+        int height = decisionTreeDepth;
+        if (pool == null || height == 1) {
+            stateCopies++;
+            return generateDecisionTree(new State(state), piece, height, Integer.MIN_VALUE, Integer.MAX_VALUE,
+                    mode, endGame, blockingPositions);
+        }
+        long key = state.getZobristKey();
+        List<Move> moves = orderMoves(generateMoves(state, piece, mode, blockingPositions),
+                transpositionTable.probe(key), previousMove, height);
+        Piece nextPiece = nextPiece(endGame, state);
+        AtomicLong best = new AtomicLong(Long.MAX_VALUE); // the value in the high half, the move index in the low half
+        List<ForkJoinTask<Minimax>> tasks = new ArrayList<>();
+        for (int i = 0; i < moves.size(); i++) {
+            int index = i;
+            Minimax worker = rootMoveWorkers.computeIfAbsent(moveKey(moves.get(i)), moveKey -> new Minimax(this));
+            worker.startIteration(this);
+            tasks.add(pool.submit(() -> {
+                worker.stateCopies++;
+                State childState = new State(state);
+                childState.makeMove(moves.get(index));
+                if (!endGame) {
+                    childState.changeTurn();
+                }
+                int value;
+                if (isWinState(childState)) {
+                    value = winValue(childState, height);
+                } else {
+                    int beta = rootBound(best.get(), index);
+                    value = worker.generateDecisionTree(childState, nextPiece, height - 1, Integer.MIN_VALUE, beta,
+                            mode, endGame, null);
+                    if (worker.timedOut) {
+                        timedOut = true;
+                        return worker;
+                    }
+                    // only a lower bound, this move cannot be decided. no value exceeds Integer.MAX_VALUE,
+                    // so a value reaching an unbounded beta is exact
+                    if (value >= beta && beta != Integer.MAX_VALUE) {
+                        worker.cutoffs++;
+                        return worker;
+                    }
+                }
+                best.accumulateAndGet((long) value << Integer.SIZE | index, Math::min);
+                return worker;
+            }));
+        }
+        for (ForkJoinTask<Minimax> task : tasks) {
+            addCounts(task.join());
+        }
+        if (timedOut || best.get() == Long.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+        int heuristicValue = (int) (best.get() >> Integer.SIZE);
+        decidedMove = moves.get((int) best.get());
+        transpositionTable.store(key, height, TranspositionTable.EXACT, heuristicValue, decidedMove);
+        return heuristicValue;
+    }
+
+    // returns the beta a worker searches the root move at index with, given the best (value, move index) so far
+    private static int rootBound(long best, int index) {
+        int bestValue = (int) (best >> Integer.SIZE);
+        if (bestValue == Integer.MAX_VALUE) { // no move found yet, or bestValue + 1 would overflow
+            return Integer.MAX_VALUE;
+        }
+        int bestIndex = (int) best;
+        return index < bestIndex ? bestValue + 1 : bestValue; // a move ordered first wins a tie
+    }
+
+    // * generates a Minimax decision tree rooted at the state parameter and returns its heuristic value.
     // * flow: the current player chooses a set of moves, and recursively calculates
     //   possible responses by the other players. finally, it chooses the move that will
     //   likely lead to the best outcome a few moves ahead (the depth parameter is responsible
     //   for the number of moves ahead it calculates).
+    // * the tree is not kept in memory, each move is applied to state before its subtree is generated
+    //   and undone after, so state is the same on return. the chosen root move is kept in decidedMove.
+    // * positions reached again by another move order are looked up in the transposition table instead of being
+    //   expanded again, and the best move stored for a position is expanded first. results searched at least as deep
+    //   are used, or with exactDepthHits only results searched to the same depth, so the value of a position does not
+    //   depend on the positions searched before it.
+    // * alpha and beta bound the values that can still change the decision: the current player (minimizing) is
+    //   already guaranteed a value of at most beta and the opponents (maximizing) a value of at least alpha.
+    //   once a node's value is outside these bounds the rest of its moves are not generated, and the returned
+    //   value is only a bound. a value strictly inside the bounds is exact, so the decided move is the same as
+    //   without the bounds.
     // * if endGame is set to true, the algorithm will not take in account other players moves and will
     //   only calculate the fastest way to victory.
     // * if a winning state is achieved for current player it will not proceed to create more branches.
-    private int generateDecisionTree(DecisionTreeNode root, Piece piece, int height, Mode mode,
+    // * once the deadline has passed timedOut is set and the tree is unwound without storing or deciding anything,
+    //   the returned values are then meaningless.
+    private int generateDecisionTree(State state, Piece piece, int height, int alpha, int beta, Mode mode,
                                      boolean endGame, List<VirtualPosition> blockingPositions) {
         if (height == 0) {
-            int heuristicValue = heuristicValue(root.state);
-            root.heuristicValue = heuristicValue;
-            return heuristicValue;
+            evaluations++;
+            return heuristicValue(state);
+        }
+        if (isTimedOut()) {
+            timedOut = true;
+            return 0;
+        }
+        boolean root = height == decisionTreeDepth;
+        long key = state.getZobristKey();
+        long entry = transpositionTable.probe(key);
+        transpositionProbes++;
+        if (!root && entry != TranspositionTable.NO_ENTRY && (exactDepthHits
+                ? TranspositionTable.depth(entry) == height : TranspositionTable.depth(entry) >= height)) {
+            int bound = TranspositionTable.bound(entry);
+            int value = TranspositionTable.value(entry);
+            if (bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER_BOUND && value >= beta)
+                    || (bound == TranspositionTable.UPPER_BOUND && value <= alpha)) {
+                transpositionHits++; // only an entry that ends the search of the node is a hit
+                return value;
+            }
+        }
+        int originalAlpha = alpha;
+        int originalBeta = beta;
+        nodesExpanded++;
+        Set<Move> moves = generateMoves(state, piece, mode, blockingPositions);
+
+        int heuristicValue = minimize(piece) ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+        Move bestMove = null;
+        for (Move move : orderMoves(moves, entry, root ? previousMove : null, height)) {
+            // the next player plays a move based on previous moves
+            Piece nextPiece = nextPiece(endGame, state);
+            state.makeMove(move);
+            if (!endGame) {
+                state.changeTurn();
+            }
+            boolean winState = isWinState(state);
+            int childHeuristicValue = winState
+                    ? winValue(state, height)
+                    : generateDecisionTree(state, nextPiece, height - 1, alpha, beta, mode, endGame, null);
+            state.unmakeMove(move);
+            if (timedOut) {
+                return 0;
+            }
+            boolean improves = minimize(piece)
+                    ? childHeuristicValue < heuristicValue : childHeuristicValue > heuristicValue;
+            boolean first = root && bestMove == null; // always decide on some move
+            if (winState || improves || first) {
+                heuristicValue = childHeuristicValue;
+                bestMove = move;
+            }
+            if (winState) { // reached win state in child for this.player
+                break; // no need to check other moves as we have reached a win state which is best possible
+            }
+            if (minimize(piece)) {
+                beta = Math.min(beta, heuristicValue);
+            } else {
+                alpha = Math.max(alpha, heuristicValue);
+            }
+            if (alpha >= beta) { // the previous players will not let the game reach this node
+                cutoffs++;
+                recordCutoff(move, height);
+                break;
+            }
+        }
+        if (root) {
+            decidedMove = bestMove;
+        }
+        int bound = TranspositionTable.EXACT;
+        if (heuristicValue <= originalAlpha) {
+            bound = TranspositionTable.UPPER_BOUND;
+        } else if (heuristicValue >= originalBeta) {
+            bound = TranspositionTable.LOWER_BOUND;
         }
+        transpositionTable.store(key, height, bound, heuristicValue, bestMove);
+        return heuristicValue;
+    }
+
+    // returns the filtered moves of piece, moving a blocking position first if possible
+    private Set<Move> generateMoves(State state, Piece piece, Mode mode, List<VirtualPosition> blockingPositions) {
+        Set<Move> allMoves = state.getMoves(piece); // generated once and filtered as many times as needed
+        movesGenerated += allMoves.size();
         Set<Move> moves;
         if (blockingPositions != null && blockingPositions.size() > 0) {
             Iterator<VirtualPosition> blockingPositionsIterator = blockingPositions.iterator();
             do {
-                moves = filterMoves(root.state, root.state.getMoves(piece), mode, piece, blockingPositionsIterator.next());
+                moves = filterMoves(state, allMoves, mode, piece, blockingPositionsIterator.next());
             } while (moves.size() == 0 && blockingPositionsIterator.hasNext());
             if (moves.isEmpty()) { // if can't move the blocking piece get other moves
                 // this means there is a blocking position but can't move it
-                moves = filterMoves(root.state, root.state.getMoves(piece), mode, piece, null);
+                moves = filterMoves(state, allMoves, mode, piece, null);
             }
         } else {
-            moves = filterMoves(root.state, root.state.getMoves(piece), mode, piece, null);
+            moves = filterMoves(state, allMoves, mode, piece, null);
         }
+        return moves;
+    }
 
-        for (Move move : moves) {
-            // the next player plays a move based on previous moves
-            State state = root.state;
-            Piece nextPiece = nextPiece(endGame, state);
-            DecisionTreeNode child = new DecisionTreeNode(state, move, nextPiece);
-            root.addChild(child);
-            if (piece != state.getCurrentPlayer().getPiece() || !isWinState(child.state)) { // not win state for this.player
-                int heuristicValue = generateDecisionTree(child, nextPiece, height - 1, mode, endGame, null);
-                if (minimize(piece) && heuristicValue < root.heuristicValue) {
-                    root.heuristicValue = heuristicValue;
-                } else if (!minimize(piece) && heuristicValue > root.heuristicValue) {
-                    root.heuristicValue = heuristicValue;
-                }
-            } else { // reached win state in child for this.player
-                // put the minimum value possible with a height factor such that a higher node is preferred
-                child.heuristicValue = -height - state.getMaxDistance() * state.getNumPieces() * state.getPlayers().size();
-                root.heuristicValue = -height - state.getMaxDistance() * state.getNumPieces() * state.getPlayers().size();
-                break; // no need to check other moves as we have reached a win state which is best possible
+    // * returns the moves to expand at height in order: the move with the same origin and destination as firstMove,
+    //   or else the best move stored in the transposition table entry, then the killer moves of height,
+    //   then the rest by decreasing history. moves that tie keep the order of the filter.
+    // * the order only changes how soon cutoffs happen, not the value of the node.
+    private List<Move> orderMoves(Set<Move> moves, long entry, Move firstMove, int height) {
+        List<Move> filteredMoves = new ArrayList<>(moves);
+        long[] keys = new long[filteredMoves.size()];
+        for (int i = 0; i < keys.length; i++) {
+            Move move = filteredMoves.get(i);
+            int rank;
+            if (firstMove != null ? moveKey(move) == moveKey(firstMove) : TranspositionTable.isBestMove(entry, move)) {
+                rank = 0;
+            } else if (isKillerMove(move, height)) {
+                rank = 1;
+            } else {
+                rank = 2;
+            }
+            keys[i] = (long) rank << (Integer.SIZE + SORT_KEY_INDEX_BITS)
+                    | (long) (Integer.MAX_VALUE - history[moveKey(move)]) << SORT_KEY_INDEX_BITS
+                    | i;
+        }
+        return selectMoves(filteredMoves, keys, keys.length);
+    }
+
+    // identifies a move by its origin and destination indices, a move is never 0
+    private static int moveKey(Move move) {
+        return move.getOriginIndex() << Byte.SIZE | move.getDestinationIndex();
+    }
+
+    private boolean isKillerMove(Move move, int height) {
+        for (int killerMove : killerMoves[height]) {
+            if (killerMove == moveKey(move)) {
+                return true;
             }
         }
-        return root.heuristicValue;
+        return false;
+    }
+
+    // * remembers that move caused a cutoff at height
+    // * it becomes the first killer move of height, and its history grows with the size of the subtree it cut off
+    private void recordCutoff(Move move, int height) {
+        int moveKey = moveKey(move);
+        int[] killers = killerMoves[height];
+        if (killers[0] != moveKey) {
+            System.arraycopy(killers, 0, killers, 1, killers.length - 1);
+            killers[0] = moveKey;
+        }
+        history[moveKey] = (int) Math.min(Integer.MAX_VALUE, (long) history[moveKey] + height * height);
+    }
+
+    // * returns the limit first moves of candidates ordered by keys, where keys[i] is the sort key of candidates.get(i)
+    //   packed with i in its low SORT_KEY_INDEX_BITS bits, so moves with equal keys keep their order.
+    // * keys is sorted in place.
+    private static List<Move> selectMoves(List<Move> candidates, long[] keys, int limit) {
+        Arrays.sort(keys);
+        List<Move> selectedMoves = new ArrayList<>();
+        for (int i = 0; i < keys.length && i < limit; i++) {
+            selectedMoves.add(candidates.get((int) (keys[i] & ((1 << SORT_KEY_INDEX_BITS) - 1))));
+        }
+        return selectedMoves;
+    }
+
+    // * packs four ascending sort keys, most significant first, and the index of the move into a sort key
+    // * each key is clamped to SORT_KEY_FIELD_BITS bits, which only merges keys that are derived from
+    //   the Integer.MAX_VALUE distance to a full end zone
+    private static long sortKey(int key1, int key2, int key3, int key4, int index) {
+        long sortKey = sortKeyField(key1);
+        sortKey = sortKey << SORT_KEY_FIELD_BITS | sortKeyField(key2);
+        sortKey = sortKey << SORT_KEY_FIELD_BITS | sortKeyField(key3);
+        sortKey = sortKey << SORT_KEY_FIELD_BITS | sortKeyField(key4);
+        return sortKey << SORT_KEY_INDEX_BITS | index;
+    }
+
+    // clamps a sort key and biases it to a non negative field of SORT_KEY_FIELD_BITS bits
+    private static long sortKeyField(int key) {
+        return Math.max(-SORT_KEY_FIELD_BIAS, Math.min(SORT_KEY_FIELD_BIAS - 1, key)) + SORT_KEY_FIELD_BIAS;
+    }
+
+    // * returns the value of a win state reached at height
+    // * it is below any heuristic value, with a height factor such that a higher node is preferred
+    private int winValue(State state, int height) {
+        return -height - state.getMaxDistance() * state.getNumPieces() * state.getPlayers().size();
     }
 
     private Player leadingOpponent() {
@@ -177,10 +694,45 @@ public class Minimax implements AI {
         return piece == state.getCurrentPlayer().getPiece();
     }
 
+    // * returns the endgame tablebase of the board if it may cover the positions of piece, or else null
+    // * the tablebase ignores the other players, so it is only used in a two player game. the number of pieces
+    //   outside the end zone is checked before the tablebase is looked up, so most decisions never look it up
+    private static EndgameTablebase coveringTablebase(State state, Piece piece) {
+        if (state.getPlayers().size() != 2) {
+            return null;
+        }
+        int numPiecesOutside = state.getNumPiecesOutsideEndZone(piece);
+        if (numPiecesOutside == 0) {
+            return null;
+        }
+        EndgameTablebase tablebase = EndgameTablebase.of(state);
+        return tablebase != null && numPiecesOutside <= tablebase.getMaxOutside(piece) ? tablebase : null;
+    }
+
+    // * returns the move of piece to the configuration tablebase rates closest to a win,
+    //   or null if tablebase does not cover state or no move gets closer to a win.
+    // * state is modified during the search and restored on return
+    private static Move tablebaseMove(EndgameTablebase tablebase, State state, Piece piece) {
+        int distance = tablebase.distanceToWin(state, piece);
+        if (distance <= 0) {
+            return null;
+        }
+        Move bestMove = null;
+        for (Move move : state.getMoves(piece)) {
+            state.makeMove(move);
+            int moveDistance = tablebase.distanceToWin(state, piece);
+            state.unmakeMove(move);
+            if (moveDistance >= 0 && moveDistance < distance) { // the other pieces may block the shortest win
+                distance = moveDistance;
+                bestMove = move;
+            }
+        }
+        return bestMove;
+    }
+
     // win state is when all the player's pieces reach the opposite corner
     private boolean isWinState(State state) {
-        return state.getEndZonePositions(this.state.getCurrentPlayer().getPiece())
-                .containsAll(state.getPositions(this.state.getCurrentPlayer().getPiece()));
+        return state.isInEndZone(this.state.getCurrentPlayer().getPiece());
     }
 
     // * end game is when the player is close to victory and hence chances are it depends only on itself.
@@ -298,104 +850,50 @@ public class Minimax implements AI {
     // filters all possible moves to a subset based on the mode and the game state
     private Set<Move> filterMoves(State state, Set<Move> moves, Mode mode, Piece piece, VirtualPosition blockingPosition) {
         if (blockingPosition != null) {
-            return moves
+            List<Move> candidates = moves
                     .stream()
                     .filter(move -> move.getOrigin().equals(blockingPosition)) // if there are blocking positions use only them
                     .filter(move -> isForward(state, move, piece))
-                    .sorted(Comparator.comparing(move -> -state.distance(move.getOrigin(), state.getCenter()))) // farthest from center first
-                    .limit(NUM_FILTERED_MOVES_BLOCKING)
-                    .collect(Collectors.toSet());
+                    .collect(Collectors.toList());
+            long[] keys = new long[candidates.size()];
+            for (int i = 0; i < keys.length; i++) { // farthest from center first
+                keys[i] = sortKey(-state.distance(candidates.get(i).getOrigin(), state.getCenter()), 0, 0, 0, i);
+            }
+            return new LinkedHashSet<>(selectMoves(candidates, keys, NUM_FILTERED_MOVES_BLOCKING));
         }
         if (mode == Mode.EASY) {
             return moves // use only moves that are towards end zone
                     .stream()
                     .filter(move -> isForward(state, move, piece))
                     .limit(NUM_FILTERED_MOVES_EASY)
-                    .collect(Collectors.toSet());
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
         }
         if (mode == Mode.ENDGAME) {
             return moves // use moves that are not backwards
                     .stream()
                     .filter(move -> isNotBackward(state, move, piece))
                     .limit(NUM_FILTERED_MOVES_END_GAME)
-                    .collect(Collectors.toSet());
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
         }
 
         // get here when mode is NORMAL or HARD, it is not end game, and there are no blocking positions of current player
+        // the sort keys of each move are calculated once, and sorted packed in a single long
         int sign = midGame ? 1 : -1;
-        return moves
+        VirtualPosition farthestPosition = state.getFarthestPosition(state.getCurrentPlayer());
+        List<Move> candidates = moves
                 .stream()
                 .filter(move -> !isToCrowdedEndZone(state, move, piece)) // take only moves that are not to a crowded opponent end zone
-                .sorted(Comparator.comparing(move -> moveDelta(state, (Move) move, piece)) // prefer highest distance to end zone covered first
-                        .thenComparing(move -> sign * state.distance(((Move) move).getOrigin(), // if midGame prefer positions near farthest position
-                                state.getFarthestPosition(state.getCurrentPlayer()))) // else prefer positions near home
-                        .thenComparing(move -> state.distance(((Move) move).getDestination(), // prefer moves deeper in end zone
-                                state.getFarthestPosition(state.getCurrentPlayer())))
-                        .thenComparing(move -> moveEdgeDelta(state, (Move) move, piece))) // if entered opponent (own) end zone prefer close (far) from center
-                .limit(mode == Mode.NORMAL ? NUM_FILTERED_MOVES_NORMAL : NUM_FILTERED_MOVES_HARD)
-                .collect(Collectors.toSet());
-    }
-
-    // a class to represent a decision tree node for the minimax algorithm
-    private class DecisionTreeNode {
-
-        private final State state;
-        private final Set<DecisionTreeNode> children;
-        private final Move lastMove;
-        private int heuristicValue;
-
-        private DecisionTreeNode(State state, Piece piece) {
-            if (Minimax.this.state.getCurrentPlayer().getPiece() == piece) {
-                this.heuristicValue = Integer.MAX_VALUE;
-            } else {
-                this.heuristicValue = Integer.MIN_VALUE;
-            }
-            this.state = new State(state);
-            this.children = new HashSet<>();
-            this.lastMove = null;
-        }
-
-        private DecisionTreeNode(State state, Move lastMove, Piece piece) {
-            this.lastMove = lastMove; // keep track of last move made for the Minimax to get its final decision
-            this.state = new State(state, lastMove);
-            if (!isEndGame()) {
-                this.state.changeTurn();
-            }
-            if (Minimax.this.state.getCurrentPlayer().getPiece() == piece) {
-                this.heuristicValue = Integer.MAX_VALUE;
-            } else {
-                this.heuristicValue = Integer.MIN_VALUE;
-            }
-            this.children = new HashSet<>();
-        }
-
-        private void addChild(DecisionTreeNode child) {
-            this.children.add(child);
-        }
-
-        @Override
-        public String toString() {
-            StringBuilder buffer = new StringBuilder();
-            print(buffer, "", "");
-            return buffer.toString();
-        }
-
-        private void print(StringBuilder buffer, String prefix, String childrenPrefix) {
-            buffer.append(prefix);
-            buffer.append(" hVal: ").append(heuristicValue);
-            buffer.append(" piece: ").append(state.getCurrentPlayer().getPiece());
-            buffer.append(" move: ").append(lastMove);
-            buffer.append('\n');
-            for (Iterator<DecisionTreeNode> it = children.iterator(); it.hasNext();) {
-                DecisionTreeNode next = it.next();
-                if (it.hasNext()) {
-                    next.print(buffer, childrenPrefix + "|-- ", childrenPrefix + "|   ");
-                } else {
-                    next.print(buffer, childrenPrefix + "|-- ", childrenPrefix + "    ");
-                }
-            }
+                .collect(Collectors.toList());
+        long[] keys = new long[candidates.size()];
+        for (int i = 0; i < keys.length; i++) {
+            Move move = candidates.get(i);
+            keys[i] = sortKey(moveDelta(state, move, piece), // prefer highest distance to end zone covered first
+                    sign * state.distance(move.getOrigin(), farthestPosition), // if midGame prefer positions near farthest position, else prefer positions near home
+                    state.distance(move.getDestination(), farthestPosition), // prefer moves deeper in end zone
+                    moveEdgeDelta(state, move, piece), // if entered opponent (own) end zone prefer close (far) from center
+                    i);
         }
-
+        return new LinkedHashSet<>(selectMoves(candidates, keys,
+                mode == Mode.NORMAL ? NUM_FILTERED_MOVES_NORMAL : NUM_FILTERED_MOVES_HARD));
     }
 }
-
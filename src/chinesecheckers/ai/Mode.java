@@ -8,4 +8,6 @@ public enum Mode {
     NORMAL,
     HARD,
     ENDGAME,
+    TIMED, // deepens the search until a time budget is spent
+    MCTS, // searches with MonteCarloTreeSearch instead of Minimax
 }
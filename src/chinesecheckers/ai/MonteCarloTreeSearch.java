@@ -0,0 +1,376 @@
+package chinesecheckers.ai;
+
+import chinesecheckers.util.BoardShape;
+import chinesecheckers.util.Move;
+import chinesecheckers.util.PackedMove;
+import chinesecheckers.util.Piece;
+import chinesecheckers.util.Player;
+import chinesecheckers.util.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Represents an AI based on Monte Carlo tree search with the UCT selection rule, chosen by {@link Mode#MCTS}.
+ * Unlike the paranoid {@link Minimax}, every player is assumed to play for itself: each node keeps the reward of
+ * the player who moved into it, so the search does not grow with the number of players.
+ * A playout descends the tree, expands a single move, then plays a few rounds of a fast rollout policy that
+ * mostly takes the move covering the longest distance towards the mover's end zone. The position reached is
+ * rewarded for every player by its distance to victory relative to the other players.
+ * The search is root parallel: a tree per thread of the pool is grown from its own seed, and the root move with the
+ * most playouts over all the trees is decided. With an iteration budget and no time budget the decided move
+ * therefore depends only on the number of threads.
+ * The search works on {@link PackedMove packed moves} generated into a buffer of every tree, and only the decided
+ * move is turned into a {@link Move}.
+ */
+public class MonteCarloTreeSearch implements AI {
+
+    private static final long TIME_BUDGET_MILLIS = 1000;
+    private static final double EXPLORATION = 0.5; // the UCT exploration constant, for rewards between 0 and 1
+    private static final int ROLLOUT_ROUNDS = 2; // the number of moves of every player in a rollout
+    private static final double ROLLOUT_RANDOM_MOVE_PROBABILITY = 0.2; // else the longest forward move is taken
+    private static final long SEED = 1;
+
+    private final long timeBudgetMillis;
+    private final long iterationBudget;
+    private final ForkJoinPool pool;
+    private final AtomicBoolean cancelled = new AtomicBoolean(); // shared by all the trees
+
+    /**
+     * Creates a Monte Carlo tree search AI searching for a second with a tree per thread of the common pool.
+     */
+    public MonteCarloTreeSearch() {
+        this(TIME_BUDGET_MILLIS, Long.MAX_VALUE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a Monte Carlo tree search AI.
+     * A decision stops once either budget is spent.
+     * @param timeBudgetMillis the time in milliseconds a decision may search, {@link Long#MAX_VALUE} for no limit.
+     * @param iterationBudget the number of playouts of every tree, {@link Long#MAX_VALUE} for no limit.
+     * @param pool the pool the trees are grown on, a tree per thread, or {@code null} to grow a single tree
+     *             on the calling thread.
+     */
+    public MonteCarloTreeSearch(long timeBudgetMillis, long iterationBudget, ForkJoinPool pool) {
+        if (timeBudgetMillis == Long.MAX_VALUE && iterationBudget == Long.MAX_VALUE) {
+            throw new IllegalArgumentException("either the time or the number of iterations must be limited");
+        }
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.iterationBudget = iterationBudget;
+        this.pool = pool;
+    }
+
+    /**
+     * Takes the current game {@link State} and chooses a move for the current player by Monte Carlo tree search.
+     * A winning move or the only move is returned at once. The mode only selects the {@link SearchStatistics}
+     * the decision is counted by, where the nodes expanded are the tree nodes, the evaluations are the rollouts
+     * and the depth reached is the depth of the deepest tree node.
+     * @param state Represents the state upon which to decide AI move
+     * @param mode Represents the quality of the move to be decided
+     * @return Move object representing the decided move, {@code null} if the decision was cancelled
+     */
+    @Override
+    public Move decideMove(State state, Mode mode) {
+        SearchStatistics statistics = SearchStatistics.of(BoardShape.of(state), mode);
+        long start = System.nanoTime();
+        long deadline = timeBudgetMillis >= Long.MAX_VALUE / 1_000_000
+                ? Long.MAX_VALUE : start + timeBudgetMillis * 1_000_000;
+        int[] rootMoves = treeMoves(state, new int[state.getMaxNumMoves()]);
+        for (int move : rootMoves) {
+            if (rootMoves.length == 1 || isWinning(state, move)) {
+                statistics.recordDecision(System.nanoTime() - start, 1);
+                return state.toMove(move);
+            }
+        }
+        if (rootMoves.length == 0) {
+            return null;
+        }
+        List<Tree> trees = new ArrayList<>();
+        int numTrees = pool == null ? 1 : pool.getParallelism();
+        for (int i = 0; i < numTrees; i++) {
+            trees.add(new Tree(state, new Random(SEED + i), deadline));
+        }
+        if (pool == null) {
+            trees.get(0).grow();
+        } else {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (Tree tree : trees) {
+                tasks.add(pool.submit(tree::grow));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        }
+        long[] visits = new long[rootMoves.length];
+        int maxDepth = 0;
+        for (Tree tree : trees) {
+            for (Node child : tree.root.children) {
+                visits[rootMoveIndex(rootMoves, child.move)] += child.visits;
+            }
+            maxDepth = Math.max(maxDepth, tree.maxDepth);
+            statistics.nodesExpanded.add(tree.nodesExpanded);
+            statistics.movesGenerated.add(tree.movesGenerated);
+            statistics.stateCopies.add(tree.stateCopies);
+            statistics.evaluations.add(tree.evaluations);
+        }
+        if (cancelled.get()) {
+            return null;
+        }
+        int best = 0;
+        for (int i = 1; i < visits.length; i++) {
+            if (visits[i] > visits[best]) { // a move ordered first wins a tie
+                best = i;
+            }
+        }
+        statistics.recordDecision(System.nanoTime() - start, maxDepth);
+        return state.toMove(rootMoves[best]);
+    }
+
+    @Override
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    // returns the index of move in rootMoves, packed moves of copies of the same state being equal
+    private static int rootMoveIndex(int[] rootMoves, int move) {
+        for (int i = 0; i < rootMoves.length; i++) {
+            if (rootMoves[i] == move) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("not a root move: " + PackedMove.getOrigin(move) + " -> "
+                + PackedMove.getDestination(move));
+    }
+
+    // returns whether the packed move wins in state, applying it to a copy
+    private static boolean isWinning(State state, int move) {
+        State child = new State(state);
+        child.movePiece(move);
+        return child.getWinner() != null;
+    }
+
+    // * returns the moves the tree expands from state: the moves of the player to move that are not backwards,
+    //   or all its moves if every move is backwards
+    // * the moves are ordered by decreasing distance covered towards the end zone, so the longest are tried first
+    // * buffer holds the moves while they are generated, the moves returned are copied out of it
+    private static int[] treeMoves(State state, int[] buffer) {
+        Piece piece = state.getCurrentPlayer().getPiece();
+        int numMoves = state.generateMoves(piece, buffer, 0);
+        int[] gains = new int[numMoves];
+        int numForward = 0;
+        for (int i = 0; i < numMoves; i++) {
+            int gain = gain(state, buffer[i], piece);
+            if (gain >= 0) {
+                gains[numForward] = gain;
+                buffer[numForward++] = buffer[i];
+            }
+        }
+        if (numForward == 0) {
+            numForward = state.generateMoves(piece, buffer, 0);
+            for (int i = 0; i < numForward; i++) {
+                gains[i] = gain(state, buffer[i], piece);
+            }
+        }
+        int[] moves = Arrays.copyOf(buffer, numForward);
+        for (int i = 1; i < moves.length; i++) { // a stable insertion sort by decreasing gain
+            int move = moves[i];
+            int gain = gains[i];
+            int j = i - 1;
+            for (; j >= 0 && gains[j] < gain; j--) {
+                moves[j + 1] = moves[j];
+                gains[j + 1] = gains[j];
+            }
+            moves[j + 1] = move;
+            gains[j + 1] = gain;
+        }
+        return moves;
+    }
+
+    // returns the distance the packed move covers towards the end zone of piece, negative if it moves away from it
+    private static int gain(State state, int move, Piece piece) {
+        return state.distanceToFreeEndZone(piece, PackedMove.getOrigin(move))
+                - state.distanceToFreeEndZone(piece, PackedMove.getDestination(move));
+    }
+
+    // applies the packed move to state and passes the turn unless the move won
+    private static void apply(State state, int move) {
+        state.movePiece(move);
+        if (state.getWinner() == null) {
+            state.changeTurn();
+        }
+    }
+
+    // * returns the reward of every player in state, indexed by the ordinal of its piece
+    // * the winner is rewarded 1 and the others 0. otherwise the reward of a player is a / (a + d), where d is its
+    //   distance to victory and a the average distance of the other players: 1/2 when even, and closer to 1 the
+    //   closer the player is to victory, without saturating while the player is far ahead
+    private static double[] rewards(State state) {
+        double[] rewards = new double[Piece.values().length];
+        List<Player> players = state.getPlayers();
+        if (state.getWinner() != null) {
+            rewards[state.getWinner().getPiece().ordinal()] = 1;
+            return rewards;
+        }
+        int totalDistance = 0;
+        for (Player player : players) {
+            totalDistance += state.getPlayerDistance(player);
+        }
+        for (Player player : players) {
+            int distance = state.getPlayerDistance(player);
+            double others = (double) (totalDistance - distance) / (players.size() - 1);
+            rewards[player.getPiece().ordinal()] = others + distance == 0 ? 0.5 : others / (others + distance);
+        }
+        return rewards;
+    }
+
+    // a node of a tree, reached by a move from its parent
+    private static final class Node {
+
+        private final int move; // the packed move, 0 at the root
+        private final Node parent;
+        private final Piece mover; // the piece that made move, null at the root
+        private final int depth;
+        private final List<Node> children = new ArrayList<>();
+        private int[] untriedMoves; // the moves not expanded yet, in order, null until the node is first reached
+        private int nextUntriedMove;
+        private int visits;
+        private double reward; // the sum of the rewards of mover over the playouts through this node
+
+        private Node(int move, Node parent, Piece mover) {
+            this.move = move;
+            this.parent = parent;
+            this.mover = mover;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+        }
+
+        // returns the child maximizing the UCT value of its mover
+        private Node select() {
+            double logVisits = Math.log(visits);
+            Node selected = null;
+            double selectedValue = Double.NEGATIVE_INFINITY;
+            for (Node child : children) {
+                double value = child.reward / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                if (value > selectedValue) {
+                    selected = child;
+                    selectedValue = value;
+                }
+            }
+            return selected;
+        }
+    }
+
+    // a tree grown by a single thread, with its own random generator and counts
+    private final class Tree {
+
+        private final State rootState;
+        private final Node root = new Node(0, null, null);
+        private final Random random;
+        private final long deadline;
+        private final int[] moves; // the buffer the moves of every position of this tree are generated into
+        private int maxDepth;
+        private long nodesExpanded;
+        private long movesGenerated;
+        private long stateCopies;
+        private long evaluations;
+
+        private Tree(State rootState, Random random, long deadline) {
+            this.rootState = rootState;
+            this.random = random;
+            this.deadline = deadline;
+            this.moves = new int[rootState.getMaxNumMoves()];
+        }
+
+        // runs playouts until a budget is spent or the decision is cancelled, at least one unless cancelled
+        private void grow() {
+            for (long iteration = 0; iteration < iterationBudget && !cancelled.get(); iteration++) {
+                if (iteration > 0 && deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0) {
+                    break;
+                }
+                playout();
+            }
+        }
+
+        // * descends the tree by UCT while the nodes are fully expanded, expands a single move,
+        //   rolls out from the position reached and adds the rewards to the nodes on the way
+        private void playout() {
+            State state = new State(rootState);
+            stateCopies++;
+            Node node = root;
+            while (state.getWinner() == null && node.untriedMoves != null
+                    && node.nextUntriedMove == node.untriedMoves.length && !node.children.isEmpty()) {
+                node = node.select();
+                apply(state, node.move);
+            }
+            if (state.getWinner() == null) {
+                if (node.untriedMoves == null) {
+                    node.untriedMoves = treeMoves(state, moves);
+                    movesGenerated += node.untriedMoves.length;
+                }
+                if (node.nextUntriedMove < node.untriedMoves.length) {
+                    Node child = new Node(node.untriedMoves[node.nextUntriedMove++], node,
+                            state.getCurrentPlayer().getPiece());
+                    node.children.add(child);
+                    nodesExpanded++;
+                    maxDepth = Math.max(maxDepth, child.depth);
+                    apply(state, child.move);
+                    node = child;
+                }
+            }
+            rollout(state);
+            double[] rewards = rewards(state);
+            evaluations++;
+            for (; node != null; node = node.parent) {
+                node.visits++;
+                if (node.mover != null) {
+                    node.reward += rewards[node.mover.ordinal()];
+                }
+            }
+        }
+
+        // plays ROLLOUT_ROUNDS moves of every player, or until a player wins
+        private void rollout(State state) {
+            int numMoves = ROLLOUT_ROUNDS * state.getPlayers().size();
+            for (int i = 0; i < numMoves && state.getWinner() == null; i++) {
+                int move = rolloutMove(state);
+                if (move == 0) {
+                    return;
+                }
+                apply(state, move);
+            }
+        }
+
+        // * returns the move of the rollout policy: usually a move covering the longest distance towards the end zone,
+        //   else a random move that is not backwards, or any random move if every move is backwards
+        // * returns the packed move, 0 if there is no move
+        private int rolloutMove(State state) {
+            Piece piece = state.getCurrentPlayer().getPiece();
+            int numMoves = state.generateMoves(piece, moves, 0);
+            movesGenerated += numMoves;
+            if (numMoves == 0) {
+                return 0;
+            }
+            boolean greedy = random.nextDouble() >= ROLLOUT_RANDOM_MOVE_PROBABILITY;
+            int selected = 0;
+            int selectedGain = Integer.MIN_VALUE;
+            int numSelected = 0;
+            for (int i = 0; i < numMoves; i++) {
+                int move = moves[i];
+                int gain = gain(state, move, piece);
+                int key = greedy ? gain : (gain >= 0 ? 0 : -1);
+                if (key > selectedGain) {
+                    selected = move;
+                    selectedGain = key;
+                    numSelected = 1;
+                } else if (key == selectedGain && random.nextInt(++numSelected) == 0) { // uniform among the best
+                    selected = move;
+                }
+            }
+            return selected;
+        }
+    }
+}
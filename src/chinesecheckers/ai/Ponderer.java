@@ -0,0 +1,113 @@
+package chinesecheckers.ai;
+
+import chinesecheckers.util.Move;
+import chinesecheckers.util.Piece;
+import chinesecheckers.util.State;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Decides the moves of the next AI player while a human player thinks, so the AI answers at once when the human
+ * plays a move that was pondered.
+ * The human's moves are predicted by the distance they cover towards the human's end zone, and the AI's reply to
+ * each of them is decided in that order, one after the other, until the human moves. The replies are kept by the
+ * {@link State#getZobristKey() Zobrist key} of the position they were decided for.
+ * Once the human moves, pondering stops at once: the decision of the position reached is handed over, even if it is
+ * still in progress, and any other decision in progress is cancelled.
+ * A ponderer is used for a single human turn.
+ */
+public final class Ponderer {
+
+    private final Function<State, AI> aiFactory;
+    private final Map<Long, CompletableFuture<Move>> decisions = new ConcurrentHashMap<>();
+    private boolean stopped; // set once the human moved or the game was left, guarded by this
+    private AI currentAI; // the AI deciding the current pondered position, null before the first, guarded by this
+    private long currentKey; // the key of the current pondered position, guarded by this
+
+    /**
+     * Creates a ponderer.
+     * @param aiFactory creates the AI that decides a move of the state it is given, as for a turn that is not pondered
+     */
+    public Ponderer(Function<State, AI> aiFactory) {
+        this.aiFactory = aiFactory;
+    }
+
+    /**
+     * Starts pondering the AI's replies to the moves of the human player to move.
+     * @param state the state of the game, the human player to move and an AI player next; it is copied
+     * @param executor the executor the replies are decided on
+     */
+    public void start(State state, Executor executor) {
+        State snapshot = new State(state);
+        executor.execute(() -> ponder(snapshot));
+    }
+
+    /**
+     * Stops pondering and takes the AI's decision of the position the human's move reached.
+     * Any other decision in progress is cancelled.
+     * @param state the state after the human's move, with the AI player to move
+     * @return the decision of the position, which may still be in progress, or {@code null} if it was not pondered
+     */
+    public synchronized CompletableFuture<Move> take(State state) {
+        long key = state.getZobristKey();
+        stopped = true;
+        if (currentAI != null && currentKey != key) {
+            currentAI.cancel();
+        }
+        return decisions.get(key);
+    }
+
+    /**
+     * Stops pondering and cancels the decision in progress.
+     */
+    public synchronized void stop() {
+        stopped = true;
+        if (currentAI != null) {
+            currentAI.cancel();
+        }
+    }
+
+    // decides the AI's reply to every move of the human, the most likely first, until stopped
+    private void ponder(State state) {
+        for (Move move : predictMoves(state)) {
+            State child = new State(state, move);
+            if (child.getWinner() != null) {
+                continue; // the AI does not reply to a winning move
+            }
+            child.changeTurn();
+            Mode mode = child.getCurrentPlayer().getMode();
+            AI ai = aiFactory.apply(child);
+            CompletableFuture<Move> decision = new CompletableFuture<>();
+            synchronized (this) {
+                if (stopped) {
+                    return;
+                }
+                currentAI = ai;
+                currentKey = child.getZobristKey();
+                decisions.put(currentKey, decision);
+            }
+            try {
+                decision.complete(ai.decideMove(new State(child), mode));
+            } catch (RuntimeException e) {
+                decision.completeExceptionally(e);
+            }
+        }
+    }
+
+    // * returns the moves of the player to move, the longest first in the distance covered towards the end zone
+    // * moves covering the same distance keep the order they are generated in
+    private static List<Move> predictMoves(State state) {
+        Piece piece = state.getCurrentPlayer().getPiece();
+        List<Move> moves = new ArrayList<>(state.getMoves(piece));
+        moves.sort(Comparator.comparingInt(move -> state.distanceToFreeEndZone(piece, move.getDestination())
+                - state.distanceToFreeEndZone(piece, move.getOrigin())));
+        return moves;
+    }
+}
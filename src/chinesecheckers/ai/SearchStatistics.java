@@ -0,0 +1,174 @@
+package chinesecheckers.ai;
+
+import chinesecheckers.util.BoardShape;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of the AI decisions of a {@link Mode} on a board shape, registered as a platform MBean named
+ * {@code chinesecheckers.ai:type=SearchStatistics,board=<shape>,mode=<mode>} the first time it is used.
+ * The counters are {@link LongAdder}s, so the searchers of a decision running on many threads add to them cheaply.
+ * A searcher counts in plain fields while it searches and adds its counts once it is done.
+ */
+public final class SearchStatistics implements SearchStatisticsMBean {
+
+    private static final String DOMAIN = "chinesecheckers.ai";
+    private static final Map<String, SearchStatistics> STATISTICS = new ConcurrentHashMap<>();
+
+    final LongAdder decisions = new LongAdder();
+    final LongAdder bookMoves = new LongAdder();
+    final LongAdder tablebaseMoves = new LongAdder();
+    final LongAdder solverMoves = new LongAdder();
+    final LongAdder decisionNanos = new LongAdder();
+    final LongAccumulator maxDecisionNanos = new LongAccumulator(Math::max, 0);
+    final LongAdder searchedDecisions = new LongAdder(); // the decisions made by a tree, whose depth is counted
+    final LongAdder depthReached = new LongAdder();
+    final LongAccumulator maxDepthReached = new LongAccumulator(Math::max, 0);
+    final LongAdder nodesExpanded = new LongAdder();
+    final LongAdder movesGenerated = new LongAdder();
+    final LongAdder stateCopies = new LongAdder();
+    final LongAdder evaluations = new LongAdder();
+    final LongAdder cutoffs = new LongAdder();
+    final LongAdder transpositionProbes = new LongAdder();
+    final LongAdder transpositionHits = new LongAdder();
+
+    private SearchStatistics() {
+    }
+
+    /**
+     * Gets the counters of the decisions of a mode on a board shape, registering them as a platform MBean
+     * the first time.
+     * The counters are still kept if the MBean cannot be registered.
+     * @param shape the shape of the board
+     * @param mode the mode the decisions are asked in
+     * @return the counters, the same instance for every call with the same shape and mode
+     */
+    public static SearchStatistics of(BoardShape shape, Mode mode) {
+        String name = DOMAIN + ":type=SearchStatistics,board=" + shape.name().toLowerCase() + ",mode=" + mode;
+        return STATISTICS.computeIfAbsent(name, key -> {
+            SearchStatistics statistics = new SearchStatistics();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(statistics, new ObjectName(key));
+            } catch (JMException e) {
+                System.err.println("Could not register " + key + ": " + e.getMessage());
+            }
+            return statistics;
+        });
+    }
+
+    /**
+     * Counts a decision.
+     * @param nanos the time of the decision in nanoseconds
+     * @param depth the depth of the tree the move was decided by, {@link Integer#MAX_VALUE} if it was not searched
+     *              by a tree, 0 if no tree was completed
+     */
+    void recordDecision(long nanos, int depth) {
+        decisions.increment();
+        decisionNanos.add(nanos);
+        maxDecisionNanos.accumulate(nanos);
+        if (depth != Integer.MAX_VALUE) {
+            searchedDecisions.increment();
+            depthReached.add(depth);
+            maxDepthReached.accumulate(depth);
+        }
+    }
+
+    @Override
+    public long getDecisions() {
+        return decisions.sum();
+    }
+
+    @Override
+    public long getBookMoves() {
+        return bookMoves.sum();
+    }
+
+    @Override
+    public long getTablebaseMoves() {
+        return tablebaseMoves.sum();
+    }
+
+    @Override
+    public long getSolverMoves() {
+        return solverMoves.sum();
+    }
+
+    @Override
+    public long getDecisionMillis() {
+        return decisionNanos.sum() / 1_000_000;
+    }
+
+    @Override
+    public double getAverageDecisionMillis() {
+        long decisions = this.decisions.sum();
+        return decisions == 0 ? 0 : decisionNanos.sum() / 1e6 / decisions;
+    }
+
+    @Override
+    public long getMaxDecisionMillis() {
+        return maxDecisionNanos.get() / 1_000_000;
+    }
+
+    @Override
+    public double getAverageDepthReached() {
+        long searchedDecisions = this.searchedDecisions.sum();
+        return searchedDecisions == 0 ? 0 : (double) depthReached.sum() / searchedDecisions;
+    }
+
+    @Override
+    public long getMaxDepthReached() {
+        return maxDepthReached.get();
+    }
+
+    @Override
+    public long getNodesExpanded() {
+        return nodesExpanded.sum();
+    }
+
+    @Override
+    public long getMovesGenerated() {
+        return movesGenerated.sum();
+    }
+
+    @Override
+    public long getStateCopies() {
+        return stateCopies.sum();
+    }
+
+    @Override
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    @Override
+    public long getCutoffs() {
+        return cutoffs.sum();
+    }
+
+    @Override
+    public long getTranspositionProbes() {
+        return transpositionProbes.sum();
+    }
+
+    @Override
+    public long getTranspositionHits() {
+        return transpositionHits.sum();
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder adder : new LongAdder[] {decisions, bookMoves, tablebaseMoves, solverMoves, decisionNanos,
+                searchedDecisions, depthReached, nodesExpanded, movesGenerated, stateCopies, evaluations, cutoffs,
+                transpositionProbes, transpositionHits}) {
+            adder.reset();
+        }
+        maxDecisionNanos.reset();
+        maxDepthReached.reset();
+    }
+}
@@ -0,0 +1,111 @@
+package chinesecheckers.ai;
+
+/**
+ * The management interface of {@link SearchStatistics}, the counters of the AI decisions of a {@link Mode}
+ * on a board shape, as seen by JMX clients such as JConsole.
+ * All the counts are totals since the start of the JVM or the last {@link #reset()}.
+ */
+public interface SearchStatisticsMBean {
+
+    /**
+     * Gets the number of moves decided.
+     * @return the number of decisions
+     */
+    long getDecisions();
+
+    /**
+     * Gets the number of decisions taken from the opening book.
+     * @return the number of book moves
+     */
+    long getBookMoves();
+
+    /**
+     * Gets the number of decisions taken from the endgame tablebase.
+     * @return the number of tablebase moves
+     */
+    long getTablebaseMoves();
+
+    /**
+     * Gets the number of decisions found by the endgame solver.
+     * @return the number of solver moves
+     */
+    long getSolverMoves();
+
+    /**
+     * Gets the time spent deciding moves.
+     * @return the total time of the decisions in milliseconds
+     */
+    long getDecisionMillis();
+
+    /**
+     * Gets the average time of a decision.
+     * @return the average time in milliseconds, 0 if there was no decision
+     */
+    double getAverageDecisionMillis();
+
+    /**
+     * Gets the time of the slowest decision.
+     * @return the longest time in milliseconds
+     */
+    long getMaxDecisionMillis();
+
+    /**
+     * Gets the average depth of the trees the decisions searched by Minimax were made by.
+     * @return the average depth, 0 if no decision was searched
+     */
+    double getAverageDepthReached();
+
+    /**
+     * Gets the depth of the deepest tree a decision was made by.
+     * @return the largest depth
+     */
+    long getMaxDepthReached();
+
+    /**
+     * Gets the number of positions whose moves were generated, by the tree searches and the endgame solver.
+     * @return the number of nodes expanded
+     */
+    long getNodesExpanded();
+
+    /**
+     * Gets the number of moves generated by the tree searches, before they are filtered.
+     * @return the number of moves generated
+     */
+    long getMovesGenerated();
+
+    /**
+     * Gets the number of copies of a {@link chinesecheckers.util.State} made by the AI.
+     * @return the number of state copies
+     */
+    long getStateCopies();
+
+    /**
+     * Gets the number of leaf positions evaluated by the heuristic.
+     * @return the number of evaluations
+     */
+    long getEvaluations();
+
+    /**
+     * Gets the number of searches cut short by the alpha-beta bounds.
+     * @return the number of cutoffs
+     */
+    long getCutoffs();
+
+    /**
+     * Gets the number of transposition table lookups.
+     * @return the number of probes
+     */
+    long getTranspositionProbes();
+
+    /**
+     * Gets the number of transposition table lookups that found the position searched deep enough, with a value
+     * that ends the search of the position.
+     * @return the number of hits
+     */
+    long getTranspositionHits();
+
+    /**
+     * Sets all the counters back to 0.
+     */
+    void reset();
+}
@@ -0,0 +1,102 @@
+package chinesecheckers.ai;
+
+import chinesecheckers.util.Move;
+
+/**
+ * A fixed size hash table from {@link chinesecheckers.util.State#getZobristKey() Zobrist keys} to search results.
+ * Each entry is packed into a single {@code long} holding the value, the depth it was searched to,
+ * the kind of bound the value is and the best move found, given by the dense indices of its origin and destination.
+ * When two positions share a slot the one searched deeper is kept.
+ * The table may be shared by several threads without locking: each slot stores its key XORed with its entry,
+ * so a slot read while another thread writes it does not validate and is treated as a miss.
+ */
+final class TranspositionTable {
+
+    static final long NO_ENTRY = 0; // returned by probe on a miss, never a valid entry
+    static final int EXACT = 0; // the value is the exact value of the position
+    static final int LOWER_BOUND = 1; // the search was cut off, the exact value is at least the value
+    static final int UPPER_BOUND = 2; // the search was cut off, the exact value is at most the value
+
+    private static final int DEPTH_SHIFT = 32;
+    private static final int BOUND_SHIFT = 40;
+    private static final int ORIGIN_SHIFT = 42;
+    private static final int DESTINATION_SHIFT = 50;
+    private static final long VALID_BIT = 1L << 63;
+    private static final long BYTE_MASK = 0xff;
+
+    private final long[] keys; // keys[i] is the key of the position in slot i XORed with entries[i]
+    private final long[] entries;
+    private final int indexMask;
+
+    /**
+     * Creates an empty table.
+     * @param sizeLog2 the base 2 logarithm of the number of entries
+     */
+    TranspositionTable(int sizeLog2) {
+        this.keys = new long[1 << sizeLog2];
+        this.entries = new long[1 << sizeLog2];
+        this.indexMask = (1 << sizeLog2) - 1;
+    }
+
+    /**
+     * Looks up the entry stored for a position.
+     * @param key the Zobrist key of the position
+     * @return the packed entry, or {@link #NO_ENTRY} if the position is not in the table
+     */
+    long probe(long key) {
+        int index = (int) key & indexMask;
+        long entry = entries[index];
+        if ((keys[index] ^ entry) == key && entry != NO_ENTRY) {
+            return entry;
+        }
+        return NO_ENTRY;
+    }
+
+    /**
+     * Stores a search result, unless its slot holds another position searched deeper.
+     * @param key the Zobrist key of the position
+     * @param depth the depth the position was searched to
+     * @param bound the kind of bound {@code value} is
+     * @param value the value found
+     * @param bestMove the best move found, may be {@code null}
+     */
+    void store(long key, int depth, int bound, int value, Move bestMove) {
+        int index = (int) key & indexMask;
+        long storedEntry = entries[index];
+        if ((keys[index] ^ storedEntry) != key && storedEntry != NO_ENTRY && depth(storedEntry) > depth) {
+            return;
+        }
+        long entry = VALID_BIT
+                | (value & 0xffffffffL)
+                | (long) depth << DEPTH_SHIFT
+                | (long) bound << BOUND_SHIFT;
+        if (bestMove != null && bestMove.getOriginIndex() >= 0) {
+            entry |= (long) bestMove.getOriginIndex() << ORIGIN_SHIFT
+                    | (long) bestMove.getDestinationIndex() << DESTINATION_SHIFT;
+        }
+        entries[index] = entry;
+        keys[index] = key ^ entry;
+    }
+
+    // decoders of the fields of a packed entry
+
+    static int value(long entry) {
+        return (int) entry;
+    }
+
+    static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT & BYTE_MASK);
+    }
+
+    static int bound(long entry) {
+        return (int) (entry >>> BOUND_SHIFT & 0x3);
+    }
+
+    // checks whether move is the best move of entry
+    static boolean isBestMove(long entry, Move move) {
+        int origin = (int) (entry >>> ORIGIN_SHIFT & BYTE_MASK);
+        int destination = (int) (entry >>> DESTINATION_SHIFT & BYTE_MASK);
+        return origin != destination
+                && move.getOriginIndex() == origin && move.getDestinationIndex() == destination;
+    }
+}
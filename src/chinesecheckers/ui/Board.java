@@ -1,6 +1,11 @@
 package chinesecheckers.ui;
 
+import chinesecheckers.ai.AI;
+import chinesecheckers.ai.LazySmp;
 import chinesecheckers.ai.Minimax;
+import chinesecheckers.ai.Mode;
+import chinesecheckers.ai.MonteCarloTreeSearch;
+import chinesecheckers.ai.Ponderer;
 import chinesecheckers.util.VirtualPosition;
 import chinesecheckers.util.State;
 import chinesecheckers.util.Player;
@@ -10,6 +15,9 @@ import chinesecheckers.util.Piece;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.imageio.ImageIO;
 import javax.swing.JPanel;
 import javax.swing.JLabel;
@@ -27,6 +35,9 @@ import java.io.IOException;
 /**
  * Abstract base class for all boards.
  * Defines the board UI that is not board-shape-specific as an instance of javax.swing.JPanel.
+ * AI moves are decided on a background thread, so the UI keeps responding during AI turns,
+ * and are played on the event dispatch thread once decided.
+ * While a human player followed by an AI player thinks, the AI's replies are pondered on the same thread.
  */
 public abstract class Board extends JPanel {
 
@@ -36,6 +47,7 @@ public abstract class Board extends JPanel {
     private static final int MINI_BOARD_Y_POSITION = 50;
     private static final int REGULAR_BOARD_BACKGROUND_SIZE = 735;
     private static final int MINI_BOARD_BACKGROUND_SIZE = 400;
+    private static final int LAZY_SMP_MIN_PROCESSORS = 16; // below this, splitting the root keeps the cores busy
 
     private static final int WINNER_LABEL_X_POSITION = 275;
     private static final int WINNER_LABEL_Y_POSITION = 75;
@@ -47,6 +59,12 @@ public abstract class Board extends JPanel {
     private static final int DELAY_BETWEEN_HOPS = 250;
     private static final int INITIAL_HOPS_DELAY = 150;
 
+    private static final ExecutorService AI_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ai");
+        thread.setDaemon(true); // does not keep the application running once the window is closed
+        return thread;
+    });
+
     private static Image regularBackGroundImage;
     private static Image miniBackGroundImage;
     private final Image backGroundImage;
@@ -54,6 +72,11 @@ public abstract class Board extends JPanel {
     private int chainIndex;
     private Timer movePieceTimer;
     private JLabel winnerLabel;
+    private AI ai; // the AI deciding the current AI turn, null if none was started or the turn was pondered
+    private CompletableFuture<Move> aiDecision; // the decision of the current AI turn, null if none was started
+    private Ponderer ponderer; // ponders the current human turn, kept until a pondered decision is played
+    private boolean abandoned; // set once the game is left, its AI turns are then cancelled and not played
+    private int numPassedTurns; // the number of AI turns passed in a row because no move was decided
 
     State state;
     final Theme theme;
@@ -103,12 +126,10 @@ public abstract class Board extends JPanel {
             this.movePieceTimer = new Timer(DELAY_BETWEEN_HOPS, this::movePiece); // initialize move chain timer
             this.movePieceTimer.setInitialDelay(INITIAL_HOPS_DELAY);
             if (players.get(0).isAI()) { // start game
-                SwingUtilities.invokeLater(() -> {
-                    Move move = getAIMove(this.players.get(0));
-                    this.moveChain = move.getMoveChain();
-                    this.movePieceTimer.start();
-                });
-            } // else wait for human to make first move
+                SwingUtilities.invokeLater(this::startAITurn);
+            } else { // wait for human to make first move
+                SwingUtilities.invokeLater(this::startPondering);
+            }
         }
     }
 
@@ -117,7 +138,7 @@ public abstract class Board extends JPanel {
     abstract int[][] getDirections();
 
     void selectPosition(ActionEvent e) {
-        if (state.getWinner() == null) {
+        if (state.getWinner() == null && !state.getCurrentPlayer().isAI()) { // AI pieces are not moved by clicks
             Position position = (Position) e.getSource();
             if (position.getPiece() == Piece.NONE && state.isDestination(position.getVirtualPosition())) {
                 // destination choice
@@ -173,26 +194,116 @@ public abstract class Board extends JPanel {
             unMarkDestinations();
             Player player = state.getPiecePlayerMap().get(destination.getPiece());
             chainIndex = 0;
+            numPassedTurns = 0;
             this.movePieceTimer.stop();
             if (state.isWinner(player)) { // check win
+                stopPondering();
                 state.setWinner(player);
                 winnerLabel.setText(player + " wins");
             } else { // continue game
-                SwingUtilities.invokeLater( () -> {
-                    state.changeTurn();
-                    if (state.getCurrentPlayer().isAI()) {
-                        Move move = getAIMove(state.getCurrentPlayer());
-                        moveChain = move.getMoveChain();
-                        movePieceTimer.start();
-                    } // else waiting for human to make move
-                });
-
+                SwingUtilities.invokeLater(this::passTurn);
             }
         }
     }
 
-    private Move getAIMove(Player player) { // gets an AI move
-        return new Minimax(state).decideMove(new State(state), player.getMode());
+    private void passTurn() { // passes the turn to the next player and starts its turn
+        state.changeTurn();
+        if (state.getCurrentPlayer().isAI()) {
+            startAITurn();
+        } else { // waiting for human to make move
+            startPondering();
+        }
+    }
+
+    // * decides the move of the current AI player on the AI thread, and plays it on the event dispatch thread
+    // * the AI works on a copy of the state, so the state of the board is only touched by the event dispatch thread
+    private void startAITurn() {
+        if (abandoned) {
+            return;
+        }
+        CompletableFuture<Move> ponderedDecision = ponderer == null ? null : ponderer.take(state);
+        if (ponderedDecision != null) { // the human played a pondered move, its decision may still be in progress
+            ai = null;
+            aiDecision = ponderedDecision;
+        } else {
+            ponderer = null;
+            State snapshot = new State(state);
+            Mode mode = state.getCurrentPlayer().getMode();
+            AI ai = newAI(snapshot);
+            this.ai = ai;
+            aiDecision = CompletableFuture.supplyAsync(() -> ai.decideMove(new State(snapshot), mode), AI_EXECUTOR);
+        }
+        aiDecision.whenCompleteAsync(this::playAIMove, SwingUtilities::invokeLater);
+    }
+
+    // starts pondering the turn of the current human player if an AI player is next
+    private void startPondering() {
+        if (abandoned || !state.nextTurn().isAI()) {
+            return;
+        }
+        ponderer = new Ponderer(Board::newAI);
+        ponderer.start(state, AI_EXECUTOR);
+    }
+
+    private void stopPondering() { // stops pondering the current human turn, if it is pondered
+        if (ponderer != null) {
+            ponderer.stop();
+            ponderer = null;
+        }
+    }
+
+    private static AI newAI(State state) { // creates the AI deciding a move of state, by the mode of its player
+        if (state.getCurrentPlayer().getMode() == Mode.MCTS) {
+            return new MonteCarloTreeSearch();
+        }
+        return Runtime.getRuntime().availableProcessors() >= LAZY_SMP_MIN_PROCESSORS
+                ? new LazySmp(state) : new Minimax(state);
+    }
+
+    // * animates a decided AI move, unless the game was left meanwhile
+    // * a decision is only cancelled when the game is left, so a failed decision or a null move leaves the AI without a
+    //   move to play: the turn is passed, and the game ends once every player passed in a row
+    private void playAIMove(Move move, Throwable failure) {
+        if (abandoned) {
+            return;
+        }
+        ponderer = null;
+        if (failure == null && move != null) {
+            moveChain = move.getMoveChain();
+            movePieceTimer.start();
+            return;
+        }
+        if (failure != null) {
+            System.out.println("Error deciding AI move:");
+            failure.printStackTrace();
+        }
+        Player player = state.getCurrentPlayer();
+        System.out.println(player + " has no move, passing the turn");
+        numPassedTurns++;
+        if (numPassedTurns == players.size()) {
+            winnerLabel.setText("No player can move");
+        } else {
+            SwingUtilities.invokeLater(this::passTurn);
+        }
+    }
+
+    /**
+     * Leaves the game: cancels the decision of the current AI turn or the pondering of the current human turn,
+     * and stops the animation of the current move.
+     * Must be called on the event dispatch thread before the board is replaced.
+     */
+    void abandon() {
+        abandoned = true;
+        stopPondering();
+        if (ai != null) {
+            ai.cancel();
+        }
+        if (aiDecision != null) {
+            aiDecision.cancel(false);
+        }
+        if (movePieceTimer != null) {
+            movePieceTimer.stop();
+        }
     }
 
     List<Player> getPlayers() { // players of the game
@@ -35,7 +35,7 @@ public class Menu {
     private static final JPanel mainMenu = new JPanel();
     private static final JPanel newGameMenu = new JPanel();
     private static final String[] boardShapeOptions = {"board shape", "square", "star"};
-    private static final String[] playerTypeOptions = {"player type", "human", "easy AI", "normal AI", "hard AI"};
+    private static final String[] playerTypeOptions = {"player type", "human", "easy AI", "normal AI", "hard AI", "timed AI", "MCTS AI"};
     private static final String[] squareNumPlayersOptions = {"number of players", "2", "4"};
     private static final String[] starOfDavidNumPlayersOptions = {"number of players", "2", "4", "6"};
     private static final DefaultComboBoxModel<String> squareNumPlayersOptionsModel = new DefaultComboBoxModel<>(squareNumPlayersOptions);
@@ -98,6 +98,14 @@ public class Menu {
                 player.setHuman(false);
                 player.setMode(Mode.HARD);
                 break;
+            case "timed AI":
+                player.setHuman(false);
+                player.setMode(Mode.TIMED);
+                break;
+            case "MCTS AI":
+                player.setHuman(false);
+                player.setMode(Mode.MCTS);
+                break;
         }
     }
 
@@ -153,6 +161,7 @@ public class Menu {
         });
     }
     private static void startNewGameMenu(ActionEvent e) {
+        board.abandon();
         boardShapeChoicePane.comboBox.setSelectedIndex(0);
         boardShapeChoicePane.comboBox.setSelectedIndex(1);
         window.getContentPane().removeAll();
@@ -162,6 +171,7 @@ public class Menu {
     }
 
     private static void startMainMenu(ActionEvent e) {
+        board.abandon();
         window.getContentPane().removeAll();
         window.getContentPane().add(mainMenu);
         window.revalidate();
@@ -260,6 +270,7 @@ public class Menu {
     }
 
     private static void start(ActionEvent e) {
+        board.abandon();
         newGameMenu.remove(board);
         newGameMenu.revalidate();
         newGameMenu.repaint();
@@ -0,0 +1,113 @@
+package chinesecheckers.util;
+
+/**
+ * Static helpers for multi-word bit masks.
+ * Bit {@code i} of a mask is bit {@code i % 64} of the word {@code i / 64}.
+ */
+final class Bits {
+
+    private Bits() {
+    }
+
+    /**
+     * Calculates the number of words needed to hold {@code numBits} bits.
+     * @param numBits the number of bits
+     * @return the number of words
+     */
+    static int numWords(int numBits) {
+        return (numBits + Long.SIZE - 1) >>> 6;
+    }
+
+    /**
+     * Checks whether a bit is set.
+     * @param mask the mask to check
+     * @param index the index of the bit
+     * @return {@code true} if the bit is set, {@code false} otherwise
+     */
+    static boolean test(long[] mask, int index) {
+        return (mask[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Sets a bit.
+     * @param mask the mask to update
+     * @param index the index of the bit
+     */
+    static void set(long[] mask, int index) {
+        mask[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * Clears a bit.
+     * @param mask the mask to update
+     * @param index the index of the bit
+     */
+    static void clear(long[] mask, int index) {
+        mask[index >>> 6] &= ~(1L << index);
+    }
+
+    /**
+     * Counts the set bits of a mask.
+     * @param mask the mask to count
+     * @return the number of set bits
+     */
+    static int count(long[] mask) {
+        int count = 0;
+        for (long word : mask) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Counts the bits set in both masks.
+     * @param mask1 first mask
+     * @param mask2 second mask
+     * @return the number of bits set in both masks
+     */
+    static int countAnd(long[] mask1, long[] mask2) {
+        int count = 0;
+        for (int i = 0; i < mask1.length; i++) {
+            count += Long.bitCount(mask1[i] & mask2[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether every bit set in {@code subset} is also set in {@code mask}.
+     * @param mask the containing mask
+     * @param subset the contained mask
+     * @return {@code true} if {@code subset} is contained in {@code mask}, {@code false} otherwise
+     */
+    static boolean containsAll(long[] mask, long[] subset) {
+        for (int i = 0; i < mask.length; i++) {
+            if ((subset[i] & ~mask[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the first set bit at or after {@code fromIndex}.
+     * @param mask the mask to search
+     * @param fromIndex the index to start from
+     * @return the index of the next set bit, or {@code -1} if there is none
+     */
+    static int nextSetBit(long[] mask, int fromIndex) {
+        int wordIndex = fromIndex >>> 6;
+        if (wordIndex >= mask.length) {
+            return -1;
+        }
+        long word = mask[wordIndex] & (-1L << fromIndex);
+        while (true) {
+            if (word != 0) {
+                return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+            }
+            if (++wordIndex == mask.length) {
+                return -1;
+            }
+            word = mask[wordIndex];
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package chinesecheckers.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Defines the layout of each board shape independently of the UI: its positions, the initial piece of each position,
+ * the end zones and the directions in which a piece can move.
+ * Boards lay out their positions from here, and a {@link State} of a new game can be created without a board.
+ */
+public enum BoardShape {
+
+    /**
+     * A 6 corner star shaped board allowing 2, 4 or 6 players.
+     * The star shape has 6 equilateral triangles of side length 4 as corners designated for initial positions,
+     * and a regular hexagon middle of side length 5.
+     */
+    STAR(17, new int[] {2, 4, 6}, new int[][] {{-2, -1}, {-2, 1}, {0, -2}, {0, 2}, {2, -1}, {2, 1}}) {
+        @Override
+        public void forEachPosition(int numPlayers, PositionConsumer consumer) {
+            Piece yellowLocationPiece = numPlayers > 2 ? Piece.YELLOW : Piece.NONE;
+            Piece blueLocationPiece = numPlayers > 2 ? Piece.BLUE : Piece.NONE;
+            Piece greenLocationPiece = numPlayers > 4 ? Piece.GREEN : Piece.NONE;
+            Piece redLocationPiece = numPlayers > 4 ? Piece.RED : Piece.NONE;
+
+            Integer[] blackInitialLocation = {4 * STAR_END_ZONE_LENGTH - 2,
+                    2 * STAR_HORIZONTAL_MAX_DISTANCE - STAR_END_ZONE_LENGTH - 1};
+            new EquilateralTriangleIterator(blackInitialLocation, STAR_END_ZONE_LENGTH, true)
+                    .forEachRemaining(location -> consumer.accept(location[0], location[1], Piece.BLACK));
+
+            Integer[] whiteInitialLocation = {4 * STAR_END_ZONE_LENGTH + 2, STAR_END_ZONE_LENGTH - 1};
+            new EquilateralTriangleIterator(whiteInitialLocation, STAR_END_ZONE_LENGTH, false)
+                    .forEachRemaining(location -> consumer.accept(location[0], location[1], Piece.WHITE));
+
+            Integer[] yellowInitialLocation = {4 * STAR_END_ZONE_LENGTH - 2, STAR_END_ZONE_LENGTH - 1};
+            new EquilateralTriangleIterator(yellowInitialLocation, STAR_END_ZONE_LENGTH, true)
+                    .forEachRemaining(location -> consumer.accept(location[0], location[1], yellowLocationPiece));
+
+            Integer[] blueInitialLocation = {4 * STAR_END_ZONE_LENGTH + 2,
+                    2 * STAR_HORIZONTAL_MAX_DISTANCE - STAR_END_ZONE_LENGTH - 1};
+            new EquilateralTriangleIterator(blueInitialLocation, STAR_END_ZONE_LENGTH, false)
+                    .forEachRemaining(location -> consumer.accept(location[0], location[1], blueLocationPiece));
+
+            Integer[] greenInitialLocation = {8 * STAR_END_ZONE_LENGTH, STAR_HORIZONTAL_MAX_DISTANCE - 1};
+            new EquilateralTriangleIterator(greenInitialLocation, STAR_END_ZONE_LENGTH, true)
+                    .forEachRemaining(location -> consumer.accept(location[0], location[1], greenLocationPiece));
+
+            Integer[] redInitialLocation = {0, STAR_HORIZONTAL_MAX_DISTANCE - 1};
+            new EquilateralTriangleIterator(redInitialLocation, STAR_END_ZONE_LENGTH, false)
+                    .forEachRemaining(location -> consumer.accept(location[0], location[1], redLocationPiece));
+
+            Integer[] emptyHexagonInitialLocation = {2 * STAR_END_ZONE_LENGTH, 2 * STAR_END_ZONE_LENGTH};
+            new RegularHexagonIterator(emptyHexagonInitialLocation, STAR_HORIZONTAL_MAX_DISTANCE - 2 * STAR_END_ZONE_LENGTH)
+                    .forEachRemaining(location -> consumer.accept(location[0], location[1], Piece.NONE));
+        }
+
+        @Override
+        public Piece oppositePiece(Piece piece) {
+            switch (piece) {
+                case WHITE:
+                    return Piece.BLACK;
+                case YELLOW:
+                    return Piece.BLUE;
+                case RED:
+                    return Piece.GREEN;
+                case BLACK:
+                    return Piece.WHITE;
+                case BLUE:
+                    return Piece.YELLOW;
+                default: // GREEN
+                    return Piece.RED;
+            }
+        }
+    },
+
+    /**
+     * A square shaped board allowing 2 or 4 players.
+     * Each player occupies a 10 positions corner for its initial pieces locations.
+     */
+    SQUARE(10, new int[] {2, 4}, new int[][] {{0, 1}, {1, 0}, {1, 1}, {0, -1}, {-1, 0}, {-1, -1}, {-1, 1}, {1, -1}}) {
+        @Override
+        public void forEachPosition(int numPlayers, PositionConsumer consumer) {
+            for (int row = 0; row < SQUARE_GRID_SIDE_LENGTH; row++) {
+                for (int col = 0; col < SQUARE_GRID_SIDE_LENGTH; col++) {
+                    consumer.accept(row, col, initialPiece(numPlayers, row, col));
+                }
+            }
+        }
+
+        // returns the piece that this location belongs to its initial positions
+        // if not any initial position returns Piece.NONE
+        private Piece initialPiece(int numPlayers, int row, int col) {
+            int maxDistance = getMaxDistance();
+            if (numPlayers == 0) return Piece.NONE;
+            if (row + col < SQUARE_END_ZONE_LENGTH) return Piece.WHITE; // top left corner
+            if (row + col > (maxDistance - SQUARE_END_ZONE_LENGTH + 1) * 2) return Piece.BLACK; // bottom right corner
+            if (numPlayers == 4 && col - row >= maxDistance - SQUARE_END_ZONE_LENGTH) return Piece.BLUE; // top right
+            if (numPlayers == 4 && row - col >= maxDistance - SQUARE_END_ZONE_LENGTH) return Piece.YELLOW;  // bottom left
+            return Piece.NONE;
+        }
+
+        @Override
+        public Piece oppositePiece(Piece piece) {
+            switch (piece) {
+                case WHITE:
+                    return Piece.BLACK;
+                case YELLOW:
+                    return Piece.BLUE;
+                case BLACK:
+                    return Piece.WHITE;
+                default: // BLUE
+                    return Piece.YELLOW;
+            }
+        }
+    };
+
+    private static final int STAR_HORIZONTAL_MAX_DISTANCE = 13; // max number of horizontal steps between two positions.
+    private static final int STAR_END_ZONE_LENGTH = 4; // end zone front line length.
+    private static final int SQUARE_END_ZONE_LENGTH = 4;
+    private static final int SQUARE_GRID_SIDE_LENGTH = 10;
+
+    private final int maxDistance;
+    private final int[] numPlayersOptions;
+    private final int[][] directions;
+
+    BoardShape(int maxDistance, int[] numPlayersOptions, int[][] directions) {
+        this.maxDistance = maxDistance;
+        this.numPlayersOptions = numPlayersOptions;
+        this.directions = directions;
+    }
+
+    /**
+     * Receives the positions of a board layout.
+     */
+    @FunctionalInterface
+    public interface PositionConsumer {
+        /**
+         * Receives a single position.
+         * @param row the row of the position
+         * @param col the column of the position
+         * @param piece the initial piece of the position, {@link Piece#NONE} if it is initially free
+         */
+        void accept(int row, int col, Piece piece);
+    }
+
+    /**
+     * Gets the shape of the board a state is played on.
+     * @param state a state created by a board or by {@link #createState(ArrayList)}
+     * @return the shape whose directions the state's pieces move in
+     */
+    public static BoardShape of(State state) {
+        int numDirections = state.getTopology().getNumDirections();
+        for (BoardShape shape : values()) {
+            if (shape.directions.length == numDirections) {
+                return shape;
+            }
+        }
+        throw new IllegalArgumentException("no board shape has " + numDirections + " directions");
+    }
+
+    /**
+     * Passes every position of the board to {@code consumer}, in the order positions are added to a {@link State}.
+     * @param numPlayers the number of players, 0 for a board without pieces
+     * @param consumer the consumer of the positions
+     */
+    public abstract void forEachPosition(int numPlayers, PositionConsumer consumer);
+
+    /**
+     * Gets the piece whose end zone is the initial corner of {@code piece}.
+     * @param piece a piece placed on this board
+     * @return the piece of the opposite corner
+     */
+    public abstract Piece oppositePiece(Piece piece);
+
+    /**
+     * Gets the max number of steps between two positions.
+     * @return the max distance
+     */
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * Gets the numbers of players a game on this board can have.
+     * @return a copy of the numbers of players, in increasing order
+     */
+    public int[] getNumPlayersOptions() {
+        return numPlayersOptions.clone();
+    }
+
+    /**
+     * Gets the directions in which a piece can move, as row and column steps.
+     * @return a copy of the directions
+     */
+    public int[][] getDirections() {
+        int[][] directions = new int[this.directions.length][];
+        for (int i = 0; i < directions.length; i++) {
+            directions[i] = this.directions[i].clone();
+        }
+        return directions;
+    }
+
+    /**
+     * Gets the pieces of a game, in the order they play.
+     * @param numPlayers the number of players, 2, 4 or 6 on the star board and 2 or 4 on the square board
+     * @return the pieces of the players
+     */
+    public List<Piece> getPieces(int numPlayers) {
+        switch (numPlayers) {
+            case 2:
+                return Arrays.asList(Piece.WHITE, Piece.BLACK);
+            case 4:
+                return Arrays.asList(Piece.WHITE, Piece.YELLOW, Piece.BLACK, Piece.BLUE);
+            default: // 6
+                return Arrays.asList(Piece.WHITE, Piece.YELLOW, Piece.RED, Piece.BLACK, Piece.BLUE, Piece.GREEN);
+        }
+    }
+
+    /**
+     * Creates the state of a new game on this board without a UI, for example for tools running the AI offline.
+     * The positions of the state are not shared with any board.
+     * @param players the players of the game, as given by {@link #getPieces(int)}
+     * @return the initialized state, with the first player to move
+     */
+    public State createState(ArrayList<Player> players) {
+        State state = new State(players, maxDistance, getDirections());
+        forEachPosition(players.size(), (row, col, piece) -> {
+            VirtualPosition position = new VirtualPosition(row, col, piece);
+            state.addPosition(position, piece);
+            if (piece != Piece.NONE) {
+                state.addEndZonePosition(position, oppositePiece(piece));
+            }
+        });
+        state.updatePointPositionMap();
+        state.updateCenter();
+        state.updateFarthestPositions();
+        return state;
+    }
+
+    // Iterates an equilateral triangle using the directions of the star board
+    private static class EquilateralTriangleIterator implements Iterator<Integer[]> {
+
+        private Integer[] location = null;
+        private final Integer[] peakLocation;
+        private final int size;
+        private final int sign;
+        private int left;
+        private int right;
+
+        // the peak location is either bottom, if upsideDown is set to true, or top otherwise.
+        private EquilateralTriangleIterator(Integer[] peakLocation, int size, boolean upsideDown) {
+            this.peakLocation = peakLocation;
+            this.size = size;
+            this.sign = upsideDown ? -1 : 1;
+            this.left = peakLocation[1];
+            this.right = peakLocation[1];
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (location == null) {
+                return true;
+            }
+            return !location[1].equals(peakLocation[1] + size - 1);
+        }
+
+        @Override
+        public Integer[] next() {
+            if (location == null) { // first location
+                location = new Integer[] {peakLocation[0], peakLocation[1]};
+                return location;
+            }
+            if (location[1].equals(right)) { // new line
+                right++;
+                left--;
+                location[0] += sign * 2;
+                location[1] = left;
+                return location;
+            }
+            location[1] += 2;
+            return location;
+        }
+    }
+
+    // Iterates a regular hexagon using the directions of the star board
+    private static class RegularHexagonIterator implements Iterator<Integer[]> {
+
+        private Integer[] location = null;
+        private final Integer[] topLeftLocation;
+        private final int size;
+        private int right;
+        private int left;
+
+        private RegularHexagonIterator(Integer[] topLeftLocation, int size) {
+            this.topLeftLocation = topLeftLocation;
+            this.size = size;
+            this.right = 2 * (size - 1) + topLeftLocation[1];
+            this.left = topLeftLocation[1];
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (location == null) {
+                return true;
+            }
+            return !(location[0].equals(topLeftLocation[0] + 4 * (size - 1))
+                    && location[1].equals(topLeftLocation[1] + 2 * (size - 1)));
+        }
+
+        @Override
+        public Integer[] next() {
+            if (location == null) { // first location
+                location = new Integer[] {topLeftLocation[0], topLeftLocation[1]};
+                return location;
+            }
+            if (location[1].equals(right)) { // new line
+                if (location[0] < 4 * (size - 1)) {
+                    left--;
+                    right++;
+                } else {
+                    left++;
+                    right--;
+                }
+                location[0] += 2;
+                location[1] = left;
+                return location;
+            }
+            location[1] += 2;
+            return location;
+        }
+    }
+}
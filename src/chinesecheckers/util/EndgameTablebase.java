@@ -0,0 +1,289 @@
+package chinesecheckers.util;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the number of moves a player needs to win once at most a few of its pieces are outside its end zone,
+ * read through a memory mapped file generated offline by {@link EndgameTablebaseGenerator}.
+ * The distances are exact for a single player model in which the other pieces are not on the board,
+ * and in which no move takes more than the covered number of pieces outside the end zone.
+ * Each configuration of the player's pieces is identified by a perfect hash: the combinatorial rank of its free end
+ * zone positions and the combinatorial rank of its positions outside the end zone.
+ * A file covers a single board shape, identified by the fingerprint of its positions and directions,
+ * and holds a section per piece whose end zone it covers.
+ */
+public final class EndgameTablebase {
+
+    static final int MAGIC = 0x43435442; // "CCTB"
+    static final int VERSION = 1;
+    static final byte UNKNOWN = -1; // the distance of a configuration no win was found from
+    static final Path DIRECTORY = Paths.get("resources", "tablebases");
+    static final String FILE_EXTENSION = ".tb";
+
+    private static final int MAX_POSITIONS = Byte.MAX_VALUE + 1;
+    private static final long[][] BINOMIALS = binomials(MAX_POSITIONS);
+    private static final Map<Topology, Optional<EndgameTablebase>> tablebases = new ConcurrentHashMap<>();
+
+    private final MappedByteBuffer buffer;
+    private final Section[] sections; // maps each piece ordinal to its section, null if not covered
+    private final long[] sectionOffsets; // maps each piece ordinal to the file offset of its distances
+
+    private EndgameTablebase(MappedByteBuffer buffer, Section[] sections, long[] sectionOffsets) {
+        this.buffer = buffer;
+        this.sections = sections;
+        this.sectionOffsets = sectionOffsets;
+    }
+
+    /**
+     * Gets the tablebase of the board shape of an initialized state, opening it on first use.
+     * The files in {@code resources/tablebases} are searched for one generated for the board shape.
+     * @param state an initialized state
+     * @return the tablebase of the board shape, or {@code null} if there is none
+     */
+    public static EndgameTablebase of(State state) {
+        Topology topology = state.getTopology();
+        if (topology == null) {
+            return null;
+        }
+        return tablebases.computeIfAbsent(topology, key -> Optional.ofNullable(find(state))).orElse(null);
+    }
+
+    /**
+     * Gets the number of moves {@code piece} needs to win, assuming the other pieces are not on the board.
+     * @param state the state to probe
+     * @param piece the piece to probe the distance of
+     * @return the number of moves to win, or {@code -1} if the tablebase does not cover the positions of
+     *         {@code piece} or another piece is in its end zone
+     */
+    public int distanceToWin(State state, Piece piece) {
+        Section section = sections[piece.ordinal()];
+        if (section == null) {
+            return -1;
+        }
+        long[] endZoneMask = state.getEndZoneMask(piece);
+        long[] pieceMask = state.getPieceMask(piece);
+        if (Bits.countAnd(endZoneMask, state.getPieceMask(Piece.NONE)) + Bits.countAnd(endZoneMask, pieceMask)
+                != Bits.count(endZoneMask)) {
+            return -1;
+        }
+        long index = section.index(pieceMask);
+        if (index < 0) {
+            return -1;
+        }
+        byte distance = buffer.get((int) (sectionOffsets[piece.ordinal()] + index));
+        return distance == UNKNOWN ? -1 : distance;
+    }
+
+    /**
+     * Gets the maximal number of pieces outside the end zone covered by the section of {@code piece}.
+     * @param piece the piece of the section
+     * @return the number of pieces, or {@code -1} if {@code piece} is not covered
+     */
+    public int getMaxOutside(Piece piece) {
+        Section section = sections[piece.ordinal()];
+        return section == null ? -1 : section.maxOutside;
+    }
+
+    /**
+     * Gets the file a tablebase of a board shape is written to.
+     * @param shape the board shape
+     * @return the path of the file
+     */
+    static Path fileOf(BoardShape shape) {
+        return DIRECTORY.resolve(shape.name().toLowerCase() + FILE_EXTENSION);
+    }
+
+    // * searches the tablebase directory for a file generated for the board shape of state
+    // * returns null if there is none, files that cannot be read are skipped
+    private static EndgameTablebase find(State state) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(DIRECTORY, "*" + FILE_EXTENSION)) {
+            for (Path file : files) {
+                try {
+                    EndgameTablebase tablebase = open(file, state);
+                    if (tablebase != null) {
+                        return tablebase;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("Error reading endgame tablebase " + file + ": " + e);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return null; // no tablebase was generated
+        } catch (IOException e) {
+            System.out.println("Error listing endgame tablebases: " + e);
+        }
+        return null;
+    }
+
+    // * maps file and reads its header, returns null if it was generated for a different board shape or version
+    // * a section is kept only if its end zone is the end zone of its piece in state
+    private static EndgameTablebase open(Path file, State state) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // stays valid once closed
+        }
+        Topology topology = state.getTopology();
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != topology.getFingerprint()
+                || buffer.getInt() != topology.getNumPositions()) {
+            return null;
+        }
+        int maxOutside = buffer.getInt();
+        int numSections = buffer.getInt();
+        Section[] sections = new Section[Piece.values().length];
+        long[] sectionOffsets = new long[Piece.values().length];
+        boolean covered = false;
+        for (int i = 0; i < numSections; i++) {
+            Piece piece = Piece.values()[buffer.getInt()];
+            long[] endZoneMask = new long[Bits.numWords(topology.getNumPositions())];
+            int numEndZonePositions = buffer.getInt();
+            for (int j = 0; j < numEndZonePositions; j++) {
+                Bits.set(endZoneMask, buffer.getInt());
+            }
+            long offset = buffer.getLong();
+            long size = buffer.getLong();
+            Section section = new Section(piece, endZoneMask, topology.getNumPositions(), maxOutside);
+            if (section.size() != size || offset + size > buffer.capacity()) {
+                throw new IOException("corrupt section of " + piece);
+            }
+            if (Arrays.equals(endZoneMask, state.getEndZoneMask(piece))) {
+                sections[piece.ordinal()] = section;
+                sectionOffsets[piece.ordinal()] = offset;
+                covered = true;
+            }
+        }
+        return covered ? new EndgameTablebase(buffer, sections, sectionOffsets) : null;
+    }
+
+    // calculates the binomial coefficients of up to n elements, binomials[n][k] is n choose k
+    private static long[][] binomials(int n) {
+        long[][] binomials = new long[n + 1][n + 1];
+        for (int i = 0; i <= n; i++) {
+            binomials[i][0] = 1;
+            for (int k = 1; k <= i; k++) {
+                binomials[i][k] = binomials[i - 1][k - 1] + binomials[i - 1][k];
+            }
+        }
+        return binomials;
+    }
+
+    /**
+     * Indexes the configurations of a piece with up to {@code maxOutside} positions outside its end zone,
+     * given that it has as many pieces as end zone positions.
+     * The configurations with {@code k} positions outside have {@code k} free end zone positions and come after
+     * all the configurations with fewer positions outside.
+     */
+    static final class Section {
+
+        final Piece piece;
+        final int maxOutside;
+        final long[] endZoneMask;
+        private final int numEndZonePositions;
+        private final int[] endZonePositions; // the end zone positions by rank
+        private final int[] outsidePositions; // the positions outside the end zone by rank
+        private final int[] ranks; // maps each position to its rank among the end zone or the outside positions
+        private final long[] levelOffsets; // maps k to the index of the first configuration with k positions outside
+
+        Section(Piece piece, long[] endZoneMask, int numPositions, int maxOutside) {
+            if (numPositions > MAX_POSITIONS) {
+                throw new IllegalArgumentException("too many positions: " + numPositions);
+            }
+            this.piece = piece;
+            this.maxOutside = maxOutside;
+            this.endZoneMask = endZoneMask;
+            this.numEndZonePositions = Bits.count(endZoneMask);
+            this.endZonePositions = new int[numEndZonePositions];
+            this.outsidePositions = new int[numPositions - numEndZonePositions];
+            this.ranks = new int[numPositions];
+            int numEndZone = 0;
+            int numOutside = 0;
+            for (int i = 0; i < numPositions; i++) {
+                if (Bits.test(endZoneMask, i)) {
+                    ranks[i] = numEndZone;
+                    endZonePositions[numEndZone++] = i;
+                } else {
+                    ranks[i] = numOutside;
+                    outsidePositions[numOutside++] = i;
+                }
+            }
+            this.levelOffsets = new long[maxOutside + 2];
+            for (int k = 0; k <= maxOutside; k++) {
+                levelOffsets[k + 1] = levelOffsets[k]
+                        + BINOMIALS[numEndZonePositions][k] * BINOMIALS[outsidePositions.length][k];
+            }
+        }
+
+        // the number of configurations
+        long size() {
+            return levelOffsets[maxOutside + 1];
+        }
+
+        // * returns the index of the configuration of the positions in pieceMask,
+        //   or -1 if too many are outside the end zone or they are not as many as the end zone positions
+        long index(long[] pieceMask) {
+            long freeRank = 0;
+            int numFree = 0;
+            for (int rank = 0; rank < numEndZonePositions; rank++) {
+                if (!Bits.test(pieceMask, endZonePositions[rank])) {
+                    freeRank += BINOMIALS[rank][++numFree];
+                }
+            }
+            long outsideRank = 0;
+            int numOutside = 0;
+            for (int position = Bits.nextSetBit(pieceMask, 0); position >= 0;
+                 position = Bits.nextSetBit(pieceMask, position + 1)) {
+                if (!Bits.test(endZoneMask, position)) {
+                    if (++numOutside > maxOutside) {
+                        return -1;
+                    }
+                    outsideRank += BINOMIALS[ranks[position]][numOutside];
+                }
+            }
+            if (numFree != numOutside) {
+                return -1;
+            }
+            return levelOffsets[numOutside] + freeRank * BINOMIALS[outsidePositions.length][numOutside] + outsideRank;
+        }
+
+        // sets pieceMask to the positions of the configuration at index
+        void configuration(long index, long[] pieceMask) {
+            int k = 0;
+            while (levelOffsets[k + 1] <= index) {
+                k++;
+            }
+            long rank = index - levelOffsets[k];
+            long numOutsideRanks = BINOMIALS[outsidePositions.length][k];
+            Arrays.fill(pieceMask, 0);
+            for (int position : endZonePositions) {
+                Bits.set(pieceMask, position);
+            }
+            long freeRank = rank / numOutsideRanks;
+            long outsideRank = rank % numOutsideRanks;
+            for (int i = k, element = numEndZonePositions; i > 0; i--) { // unranks the free end zone positions
+                do {
+                    element--;
+                } while (BINOMIALS[element][i] > freeRank);
+                freeRank -= BINOMIALS[element][i];
+                Bits.clear(pieceMask, endZonePositions[element]);
+            }
+            for (int i = k, element = outsidePositions.length; i > 0; i--) { // unranks the outside positions
+                do {
+                    element--;
+                } while (BINOMIALS[element][i] > outsideRank);
+                outsideRank -= BINOMIALS[element][i];
+                Bits.set(pieceMask, outsidePositions[element]);
+            }
+        }
+    }
+}
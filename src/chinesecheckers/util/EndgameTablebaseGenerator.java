@@ -0,0 +1,182 @@
+package chinesecheckers.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Generates the {@link EndgameTablebase} of a board shape offline, for the pieces of a 2 player game.
+ * The distances are solved backwards from the win: every pass finds the configurations that have a move to a
+ * configuration found by the previous pass, until a pass finds none.
+ * Usage: {@code EndgameTablebaseGenerator star|square [maxOutside]}, writing {@code resources/tablebases/<shape>.tb}.
+ */
+public final class EndgameTablebaseGenerator {
+
+    private static final int NUM_PLAYERS = 2;
+    private static final int DEFAULT_MAX_OUTSIDE = 2;
+
+    private final Topology topology;
+    private final EndgameTablebase.Section section;
+    private final long[] pieceMask;
+    private final long[] visitedMask; // the positions a hop chain of the current origin reached
+    private final int[] hopQueue;
+
+    private EndgameTablebaseGenerator(Topology topology, EndgameTablebase.Section section) {
+        this.topology = topology;
+        this.section = section;
+        this.pieceMask = new long[Bits.numWords(topology.getNumPositions())];
+        this.visitedMask = new long[pieceMask.length];
+        this.hopQueue = new int[topology.getNumPositions()];
+    }
+
+    /**
+     * Generates and writes the tablebase of a board shape.
+     * @param args the board shape, {@code star} or {@code square}, and optionally the maximal number of pieces
+     *             outside the end zone, 2 by default
+     * @throws IOException if the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: EndgameTablebaseGenerator star|square [maxOutside]");
+            return;
+        }
+        BoardShape shape = BoardShape.valueOf(args[0].toUpperCase());
+        int maxOutside = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_OUTSIDE;
+        Path file = EndgameTablebase.fileOf(shape);
+        long start = System.nanoTime();
+        generate(shape, maxOutside, file);
+        System.out.printf("Wrote %s in %d ms%n", file, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Solves the configurations of the pieces of a 2 player game on a board shape and writes them to a file.
+     * @param shape the board shape
+     * @param maxOutside the maximal number of pieces outside the end zone
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    static void generate(BoardShape shape, int maxOutside, Path file) throws IOException {
+        ArrayList<Player> players = new ArrayList<>();
+        for (Piece piece : shape.getPieces(NUM_PLAYERS)) {
+            players.add(new Player(piece, false));
+        }
+        State state = shape.createState(players);
+        Topology topology = state.getTopology();
+        List<EndgameTablebase.Section> sections = new ArrayList<>();
+        for (Player player : players) {
+            Piece piece = player.getPiece();
+            long[] endZoneMask = state.getEndZoneMask(piece);
+            if (Bits.count(state.getPieceMask(piece)) != Bits.count(endZoneMask)) {
+                throw new IllegalStateException(piece + " has not as many pieces as end zone positions");
+            }
+            sections.add(new EndgameTablebase.Section(piece, endZoneMask, topology.getNumPositions(), maxOutside));
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(EndgameTablebase.MAGIC);
+            out.writeInt(EndgameTablebase.VERSION);
+            out.writeLong(topology.getFingerprint());
+            out.writeInt(topology.getNumPositions());
+            out.writeInt(maxOutside);
+            out.writeInt(sections.size());
+            long offset = out.size();
+            for (EndgameTablebase.Section section : sections) { // the header size does not depend on the offsets
+                offset += 2 * Integer.BYTES + Bits.count(section.endZoneMask) * Integer.BYTES + 2 * Long.BYTES;
+            }
+            for (EndgameTablebase.Section section : sections) {
+                out.writeInt(section.piece.ordinal());
+                out.writeInt(Bits.count(section.endZoneMask));
+                for (int i = Bits.nextSetBit(section.endZoneMask, 0); i >= 0;
+                     i = Bits.nextSetBit(section.endZoneMask, i + 1)) {
+                    out.writeInt(i);
+                }
+                out.writeLong(offset);
+                out.writeLong(section.size());
+                offset += section.size();
+            }
+            for (EndgameTablebase.Section section : sections) {
+                out.write(new EndgameTablebaseGenerator(topology, section).solve());
+            }
+        }
+    }
+
+    // * finds the number of moves to win of every configuration of the section, EndgameTablebase.UNKNOWN if none.
+    // * pass d finds the configurations with a move to a configuration at distance d - 1,
+    //   so each configuration is assigned the length of its shortest win.
+    private byte[] solve() {
+        if (section.size() > Integer.MAX_VALUE) {
+            throw new IllegalStateException("too many configurations: " + section.size());
+        }
+        byte[] distances = new byte[(int) section.size()];
+        Arrays.fill(distances, EndgameTablebase.UNKNOWN);
+        distances[(int) section.index(section.endZoneMask)] = 0;
+        boolean found = true;
+        for (int distance = 1; found; distance++) {
+            if (distance > Byte.MAX_VALUE) {
+                throw new IllegalStateException("distance overflows a byte");
+            }
+            found = false;
+            for (int index = 0; index < distances.length; index++) {
+                if (distances[index] == EndgameTablebase.UNKNOWN && hasMoveTo(index, distances, distance - 1)) {
+                    distances[index] = (byte) distance;
+                    found = true;
+                }
+            }
+        }
+        return distances;
+    }
+
+    // * checks whether the configuration at index has a move to a configuration at distance.
+    // * moves are generated as by State: hop chains over occupied neighbors to free positions, then single steps
+    //   to free neighbors, with the origin occupied while hopping.
+    private boolean hasMoveTo(int index, byte[] distances, int distance) {
+        section.configuration(index, pieceMask);
+        for (int origin = Bits.nextSetBit(pieceMask, 0); origin >= 0; origin = Bits.nextSetBit(pieceMask, origin + 1)) {
+            Arrays.fill(visitedMask, 0);
+            Bits.set(visitedMask, origin);
+            int head = 0;
+            int tail = 0;
+            hopQueue[tail++] = origin;
+            while (head < tail) {
+                int position = hopQueue[head++];
+                int[] neighbors = topology.getNeighbors(position);
+                int[] jumps = topology.getJumps(position);
+                for (int direction = 0; direction < jumps.length; direction++) {
+                    int landing = jumps[direction];
+                    if (landing >= 0 && !Bits.test(visitedMask, landing)
+                            && Bits.test(pieceMask, neighbors[direction]) && !Bits.test(pieceMask, landing)) {
+                        Bits.set(visitedMask, landing);
+                        hopQueue[tail++] = landing;
+                        if (reaches(origin, landing, distances, distance)) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            for (int neighbor : topology.getNeighbors(origin)) {
+                if (neighbor >= 0 && !Bits.test(pieceMask, neighbor) && !Bits.test(visitedMask, neighbor)
+                        && reaches(origin, neighbor, distances, distance)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // checks whether moving the piece at origin to destination reaches a configuration at distance
+    private boolean reaches(int origin, int destination, byte[] distances, int distance) {
+        Bits.clear(pieceMask, origin);
+        Bits.set(pieceMask, destination);
+        long index = section.index(pieceMask);
+        Bits.clear(pieceMask, destination);
+        Bits.set(pieceMask, origin);
+        return index >= 0 && distances[(int) index] == distance;
+    }
+}
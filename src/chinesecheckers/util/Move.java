@@ -1,5 +1,7 @@
 package chinesecheckers.util;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -13,6 +15,10 @@ public class Move {
     private final VirtualPosition destination;
     private final Piece piece;
     private List<VirtualPosition> moveChain;
+    private int originIndex = -1; // the dense index of the origin in the state that generated this move, -1 if unknown
+    private int destinationIndex = -1; // the dense index of the destination, -1 if unknown
+    private int[] predecessors; // maps each position index on the move chain to the previous one, shared by moves of the same origin
+    private List<VirtualPosition> positions; // maps each dense index to its position
 
     /**
      * Creates an object representing a move originating at {@code origin}, arriving at {@code destination}
@@ -29,6 +35,24 @@ public class Move {
         this.moveChain = moveChain;
     }
 
+    /**
+     * Creates a move generated by a {@link State}, which materializes its move chain only when it is requested.
+     * @param origin the origin position
+     * @param destination the destination position
+     * @param piece the piece that moves
+     * @param originIndex the dense index of the origin
+     * @param destinationIndex the dense index of the destination
+     * @param predecessors maps each position index on the move chain to the previous one, must not be changed later
+     * @param positions maps each dense index to its position
+     */
+    Move(VirtualPosition origin, VirtualPosition destination, Piece piece, int originIndex, int destinationIndex,
+         int[] predecessors, List<VirtualPosition> positions) {
+        this(origin, destination, piece);
+        this.originIndex = originIndex;
+        this.destinationIndex = destinationIndex;
+        this.predecessors = predecessors;
+        this.positions = positions;
+    }
 
     /**
      * Creates an object representing a move originating at {@code origin} and arriving at {@code destination}
@@ -49,12 +73,61 @@ public class Move {
      * Gets the move chain originating at this origin and terminating at this destination.
      * The move chain is a list of {@link VirtualPosition} objects starting at this origin
      * and terminating at this destination.
+     * Moves generated by {@link State#getMoves(Piece)} build their chain on the first call.
      * @return the move chain of this move
      */
     public List<VirtualPosition> getMoveChain() {
+        if (moveChain == null && predecessors != null) {
+            moveChain = buildMoveChain(originIndex, destinationIndex, predecessors, positions);
+        }
+        return moveChain;
+    }
+
+    /**
+     * Builds a move chain by following predecessors from the destination back to the origin.
+     * @param originIndex the dense index of the origin
+     * @param destinationIndex the dense index of the destination
+     * @param predecessors maps each position index on the chain to the previous one
+     * @param positions maps each dense index to its position
+     * @return the move chain starting at the origin and terminating at the destination
+     */
+    static List<VirtualPosition> buildMoveChain(int originIndex, int destinationIndex, int[] predecessors,
+                                                List<VirtualPosition> positions) {
+        List<VirtualPosition> moveChain = new ArrayList<>();
+        for (int position = destinationIndex; position != originIndex; position = predecessors[position]) {
+            moveChain.add(positions.get(position));
+        }
+        moveChain.add(positions.get(originIndex));
+        Collections.reverse(moveChain);
         return moveChain;
     }
 
+    /**
+     * Gets the dense index of the origin in the {@link State} that generated this move.
+     * @return the origin index, or {@code -1} if this move was not generated by a state
+     */
+    public int getOriginIndex() {
+        return originIndex;
+    }
+
+    /**
+     * Gets the dense index of the destination in the {@link State} that generated this move.
+     * @return the destination index, or {@code -1} if this move was not generated by a state
+     */
+    public int getDestinationIndex() {
+        return destinationIndex;
+    }
+
+    /**
+     * Checks whether the indices of this move index the given positions, that is whether it was generated by a
+     * {@link State} of the board holding them.
+     * @param positions maps each dense index of a board to its position
+     * @return {@code true} if {@link #getOriginIndex()} and {@link #getDestinationIndex()} index {@code positions}
+     */
+    boolean isIndexedBy(List<VirtualPosition> positions) {
+        return this.positions == positions;
+    }
+
     /**
      * Gets the {@link Piece} associated with this move.
      * @return the piece associated with this move
@@ -0,0 +1,215 @@
+package chinesecheckers.util;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the moves decided for the opening positions of a board shape, read through a memory mapped file built offline
+ * by {@link OpeningBookBuilder}.
+ * Each record holds the canonical key of a position and the move decided for it, and the records are sorted by key
+ * so a position is found by binary search.
+ * Positions which are mirror images of each other share a record: the canonical key of a position is the smallest
+ * {@link State#getZobristKey() Zobrist key} among its images under the symmetries of the board that map the end zone
+ * of every player onto itself, and the move of the record is stored as it is played in that image.
+ */
+public final class OpeningBook {
+
+    static final int MAGIC = 0x43434f42; // "CCOB"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 2 * Integer.BYTES + Long.BYTES + 2 * Integer.BYTES;
+    static final int RECORD_SIZE = Long.BYTES + 2 * Byte.BYTES; // the key, then the origin and destination indices
+    static final Path DIRECTORY = Paths.get("resources", "books");
+    static final String FILE_EXTENSION = ".book";
+
+    private static final Map<Topology, Optional<OpeningBook>> books = new ConcurrentHashMap<>();
+
+    private final MappedByteBuffer buffer;
+    private final int numRecords;
+
+    private OpeningBook(MappedByteBuffer buffer, int numRecords) {
+        this.buffer = buffer;
+        this.numRecords = numRecords;
+    }
+
+    /**
+     * Gets the opening book of the board shape of an initialized state, opening it on first use.
+     * The files in {@code resources/books} are searched for one built for the board shape.
+     * @param state an initialized state
+     * @return the opening book of the board shape, or {@code null} if there is none
+     */
+    public static OpeningBook of(State state) {
+        Topology topology = state.getTopology();
+        if (topology == null) {
+            return null;
+        }
+        return books.computeIfAbsent(topology, key -> Optional.ofNullable(find(topology))).orElse(null);
+    }
+
+    /**
+     * Gets the move the book holds for the position of the current player.
+     * @param state the state to look up
+     * @return the legal move of the current player held by the book, or {@code null} if the position is not in the book
+     */
+    public Move getMove(State state) {
+        int[][] symmetries = gameSymmetries(state);
+        int[] symmetry = symmetries[canonicalSymmetry(state, symmetries)];
+        int record = find(canonicalKey(state, symmetry));
+        if (record < 0) {
+            return null;
+        }
+        int offset = HEADER_SIZE + record * RECORD_SIZE + Long.BYTES;
+        int origin = buffer.get(offset) & 0xff;
+        int destination = buffer.get(offset + 1) & 0xff;
+        for (Move move : state.getMoves(state.getCurrentPlayer().getPiece())) {
+            if (symmetry[move.getOriginIndex()] == origin && symmetry[move.getDestinationIndex()] == destination) {
+                return move;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of positions in the book.
+     * @return the number of records
+     */
+    public int size() {
+        return numRecords;
+    }
+
+    /**
+     * Gets the file the opening book of a board shape is written to.
+     * @param shape the board shape
+     * @return the path of the file
+     */
+    static Path fileOf(BoardShape shape) {
+        return DIRECTORY.resolve(shape.name().toLowerCase() + FILE_EXTENSION);
+    }
+
+    /**
+     * Gets the symmetries of the board of an initialized state that map the end zone of every player onto itself.
+     * @param state an initialized state
+     * @return the permutations of the position indices, the identity first
+     */
+    static int[][] gameSymmetries(State state) {
+        List<int[]> symmetries = new ArrayList<>();
+        for (int[] symmetry : state.getTopology().getSymmetries()) {
+            boolean preservesEndZones = true;
+            for (Player player : state.getPlayers()) {
+                long[] endZoneMask = state.getEndZoneMask(player.getPiece());
+                for (int i = Bits.nextSetBit(endZoneMask, 0); i >= 0 && preservesEndZones;
+                     i = Bits.nextSetBit(endZoneMask, i + 1)) {
+                    preservesEndZones = Bits.test(endZoneMask, symmetry[i]);
+                }
+            }
+            if (preservesEndZones) {
+                symmetries.add(symmetry);
+            }
+        }
+        return symmetries.toArray(new int[0][]);
+    }
+
+    /**
+     * Finds the symmetry that maps a state to its canonical image.
+     * @param state an initialized state
+     * @param symmetries the symmetries returned by {@link #gameSymmetries(State)}
+     * @return the index of the symmetry giving the smallest key, the first if several do
+     */
+    static int canonicalSymmetry(State state, int[][] symmetries) {
+        int canonical = 0;
+        long canonicalKey = Long.MAX_VALUE;
+        for (int i = 0; i < symmetries.length; i++) {
+            long key = canonicalKey(state, symmetries[i]);
+            if (key < canonicalKey) {
+                canonical = i;
+                canonicalKey = key;
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * Calculates the Zobrist key of the image of a state under a symmetry.
+     * @param state an initialized state
+     * @param symmetry a permutation of the position indices
+     * @return the key of the image, which is the key of the state for the identity
+     */
+    static long canonicalKey(State state, int[] symmetry) {
+        long key = Zobrist.turnKey(state.getPlayers().indexOf(state.getCurrentPlayer()));
+        for (Player player : state.getPlayers()) {
+            long[] pieceMask = state.getPieceMask(player.getPiece());
+            for (int i = Bits.nextSetBit(pieceMask, 0); i >= 0; i = Bits.nextSetBit(pieceMask, i + 1)) {
+                key ^= Zobrist.pieceKey(symmetry[i], player.getPiece());
+            }
+        }
+        return key;
+    }
+
+    // binary searches the records for key, returns the index of its record or -1 if it is not in the book
+    private int find(long key) {
+        int low = 0;
+        int high = numRecords - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleKey = buffer.getLong(HEADER_SIZE + middle * RECORD_SIZE);
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    // * searches the book directory for a file built for topology
+    // * returns null if there is none, files that cannot be read are skipped
+    private static OpeningBook find(Topology topology) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(DIRECTORY, "*" + FILE_EXTENSION)) {
+            for (Path file : files) {
+                try {
+                    OpeningBook book = open(file, topology);
+                    if (book != null) {
+                        return book;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    System.out.println("Error reading opening book " + file + ": " + e);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return null; // no book was built
+        } catch (IOException e) {
+            System.out.println("Error listing opening books: " + e);
+        }
+        return null;
+    }
+
+    // maps file and reads its header, returns null if it was built for a different board shape or version
+    private static OpeningBook open(Path file, Topology topology) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // stays valid once closed
+        }
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != topology.getFingerprint()
+                || buffer.getInt() != topology.getNumPositions()) {
+            return null;
+        }
+        int numRecords = buffer.getInt();
+        if (HEADER_SIZE + (long) numRecords * RECORD_SIZE != buffer.capacity()) {
+            throw new IOException("corrupt records");
+        }
+        return new OpeningBook(buffer, numRecords);
+    }
+}
@@ -0,0 +1,144 @@
+package chinesecheckers.util;
+
+import chinesecheckers.ai.Minimax;
+import chinesecheckers.ai.Mode;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the {@link OpeningBook} of a board shape offline, for every number of players.
+ * The opening is played from the start by {@link Minimax} in {@link Mode#HARD}, recording the decided move of every
+ * position. In the first plies every legal move is followed, so the book also covers the positions a human reaches
+ * by deviating early, and afterwards only the decided move is followed.
+ * Usage: {@code OpeningBookBuilder star|square [numPlies] [branchingPlies]},
+ * writing {@code resources/books/<shape>.book}.
+ */
+public final class OpeningBookBuilder {
+
+    private static final int DEFAULT_NUM_PLIES = 10;
+    private static final int DEFAULT_BRANCHING_PLIES = 2;
+    private static final Mode MODE = Mode.HARD;
+
+    private final int numPlies;
+    private final int branchingPlies;
+    private final Map<Long, Integer> moves = new HashMap<>(); // maps canonical keys to origin << 8 | destination
+
+    private OpeningBookBuilder(int numPlies, int branchingPlies) {
+        this.numPlies = numPlies;
+        this.branchingPlies = branchingPlies;
+    }
+
+    /**
+     * Builds and writes the opening book of a board shape.
+     * @param args the board shape, {@code star} or {@code square}, optionally followed by the number of plies
+     *             covered, 10 by default, and the number of plies in which every move is followed, 2 by default
+     * @throws IOException if the file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: OpeningBookBuilder star|square [numPlies] [branchingPlies]");
+            return;
+        }
+        BoardShape shape = BoardShape.valueOf(args[0].toUpperCase());
+        int numPlies = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_NUM_PLIES;
+        int branchingPlies = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_BRANCHING_PLIES;
+        Path file = OpeningBook.fileOf(shape);
+        long start = System.nanoTime();
+        int numRecords = build(shape, numPlies, branchingPlies, file);
+        System.out.printf("Wrote %d positions to %s in %d ms%n", numRecords, file, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Builds the opening book of a board shape and writes it to a file.
+     * An existing book is deleted first, so the moves are decided by searching rather than by the old book.
+     * @param shape the board shape
+     * @param numPlies the number of plies covered
+     * @param branchingPlies the number of plies in which every legal move is followed
+     * @param file the file to write
+     * @return the number of positions written
+     * @throws IOException if the file cannot be written
+     */
+    static int build(BoardShape shape, int numPlies, int branchingPlies, Path file) throws IOException {
+        Files.deleteIfExists(file);
+        OpeningBookBuilder builder = new OpeningBookBuilder(numPlies, branchingPlies);
+        for (int numPlayers : shape.getNumPlayersOptions()) {
+            ArrayList<Player> players = new ArrayList<>();
+            for (Piece piece : shape.getPieces(numPlayers)) {
+                Player player = new Player(piece, false);
+                player.setMode(MODE);
+                players.add(player);
+            }
+            builder.explore(shape.createState(players), 0);
+        }
+        builder.write(topologyOf(shape), file);
+        return builder.moves.size();
+    }
+
+    // gets the topology of the board shape, which does not depend on the number of players
+    private static Topology topologyOf(BoardShape shape) {
+        ArrayList<Player> players = new ArrayList<>();
+        for (Piece piece : shape.getPieces(shape.getNumPlayersOptions()[0])) {
+            players.add(new Player(piece, false));
+        }
+        return shape.createState(players).getTopology();
+    }
+
+    // records the decided move of state, then explores the positions it leads to until numPlies were played
+    private void explore(State state, int ply) {
+        if (ply == numPlies) {
+            return;
+        }
+        int[][] symmetries = OpeningBook.gameSymmetries(state);
+        int[] symmetry = symmetries[OpeningBook.canonicalSymmetry(state, symmetries)];
+        long key = OpeningBook.canonicalKey(state, symmetry);
+        if (moves.containsKey(key)) { // a mirror image or a transposition was explored already
+            return;
+        }
+        Move decidedMove = new Minimax(state).decideMove(new State(state), MODE);
+        moves.put(key, symmetry[decidedMove.getOriginIndex()] << Byte.SIZE | symmetry[decidedMove.getDestinationIndex()]);
+        Collection<Move> nextMoves = new ArrayList<>();
+        nextMoves.add(decidedMove);
+        if (ply < branchingPlies) {
+            nextMoves = state.getMoves(state.getCurrentPlayer().getPiece());
+        }
+        for (Move move : nextMoves) {
+            State next = new State(state, move);
+            if (next.getWinner() == null) {
+                next.changeTurn();
+                explore(next, ply + 1);
+            }
+        }
+    }
+
+    // writes the records sorted by key, replacing file once it is complete
+    private void write(Topology topology, Path file) throws IOException {
+        long[] keys = moves.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Path partialFile = file.resolveSibling(file.getFileName() + ".partial");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(partialFile)))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeLong(topology.getFingerprint());
+            out.writeInt(topology.getNumPositions());
+            out.writeInt(keys.length);
+            for (long key : keys) {
+                int move = moves.get(key);
+                out.writeLong(key);
+                out.writeByte(move >>> Byte.SIZE);
+                out.writeByte(move);
+            }
+        }
+        Files.move(partialFile, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
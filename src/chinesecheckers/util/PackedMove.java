@@ -0,0 +1,58 @@
+package chinesecheckers.util;
+
+/**
+ * Static helpers for moves packed into an {@code int}, as generated by {@link State#generateMoves(Piece, int[], int)}.
+ * The dense indices of the origin and the destination take a byte each, the lowest byte holding the origin,
+ * and the ordinal of the moving piece takes the third byte. A packed move is never 0, since its origin and
+ * destination differ.
+ * A packed move is only meaningful for the board of the state that generated it,
+ * and {@link State#toMove(int)} turns it back into a {@link Move}.
+ */
+public final class PackedMove {
+
+    private static final int DESTINATION_SHIFT = 8;
+    private static final int PIECE_SHIFT = 16;
+    private static final int BYTE_MASK = 0xff;
+    private static final Piece[] PIECES = Piece.values();
+
+    private PackedMove() {
+    }
+
+    /**
+     * Packs a move.
+     * @param origin the dense index of the origin
+     * @param destination the dense index of the destination
+     * @param piece the piece that moves
+     * @return the packed move
+     */
+    public static int of(int origin, int destination, Piece piece) {
+        return origin | destination << DESTINATION_SHIFT | piece.ordinal() << PIECE_SHIFT;
+    }
+
+    /**
+     * Gets the dense index of the origin of a packed move.
+     * @param move the packed move
+     * @return the origin index
+     */
+    public static int getOrigin(int move) {
+        return move & BYTE_MASK;
+    }
+
+    /**
+     * Gets the dense index of the destination of a packed move.
+     * @param move the packed move
+     * @return the destination index
+     */
+    public static int getDestination(int move) {
+        return move >>> DESTINATION_SHIFT & BYTE_MASK;
+    }
+
+    /**
+     * Gets the piece that moves in a packed move.
+     * @param move the packed move
+     * @return the piece
+     */
+    public static Piece getPiece(int move) {
+        return PIECES[move >>> PIECE_SHIFT];
+    }
+}
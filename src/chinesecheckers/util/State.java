@@ -5,33 +5,48 @@ import java.util.Map;
 import java.util.List;
 import java.util.HashSet;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.Objects;
+import java.util.Arrays;
 
 /**
  * Keeps track of the state of the game.
+ * Every position gets a dense index in the order it was added, and the positions of each piece,
+ * the free positions and the end zone of each piece are kept as bit masks over these indices.
  */
 public class State {
 
-    private final Map<Piece, Set<VirtualPosition>> piecePositionsMap; // maps each piece to the set of its positions
-    private final Map<Player, Integer> playerDistanceMap; // maps each player to the distance it needs to cover to win
+    private static final int UNDO_RECORD_SIZE = 3;
+
+    private final List<VirtualPosition> positions; // maps each dense index to its position
+    private final Map<VirtualPosition, Integer> positionIndexMap; // maps each position to its dense index
+    private final long[][] pieceMasks; // maps each piece ordinal to the mask of its positions
+    private final long[][] endZoneMasks; // maps each piece ordinal to the mask of its end zone positions
+    private final int[] playerDistances; // maps each player index to the distance it needs to cover to win
+    private final byte[][] playerDistanceTables; // maps each player index to the distances to its free end zone
+    private final int[] piecePlayerIndices; // maps each piece ordinal to its player index, -1 if not playing
     private final Map<Piece, Set<VirtualPosition>> pieceEndZonePositionsMap; // maps each piece to the set of its end zone positions
     private final Map<Piece, Player> piecePlayerMap; // maps each piece to its player
-    private final Map<Coordinates, VirtualPosition> pointPositionMap; // maps each point (coordinates) to its position
-    private final Map<Player, VirtualPosition> playerFarthestPositionMap; // maps each player to its farthest position
+    private VirtualPosition[] playerFarthestPositions; // maps each player index to its farthest position
     private VirtualPosition center; // the center of the board
+    private Topology topology; // the precomputed tables of the board shape, null until initialized
 
-    private PositionTreeNode destinationTree; // a tree rooted at an origin position with destinations as other nodes
-    private final Set<PositionTreeNode> destinations; // a set of pointers to the destinations tree node excluding the root
+    private int destinationsOrigin = -1; // the origin index the destinations were calculated for, -1 if cleared
+    private long[] destinationsMask; // the destinations of legal moves originating at destinationsOrigin
+    private int[] predecessors; // maps each destination index to the previous position of its move chain
+    private int[] hopQueue; // reusable queue of positions reached by hop chains
 
     private final ArrayList<Player> players; // the players of this game
     private Player currentPlayer; // keep track of the player which it is its turn
     private Player winner; // keep track of the winner of the game
+    private long zobristKey; // the Zobrist key of the piece placement and the player to move
 
     private final int maxDistance; // the max distance between a position and an end zone position
     private final int[][] directions; // the directions in which a piece can move
 
+    private int[] undoStack; // per applied move: mover distance, winner index and current player index before the move
+    private int undoSize; // number of used entries in undoStack
+
     /**
      * Creates an uninitialized state of a game.
      * @param players the players of the game
@@ -43,17 +58,22 @@ public class State {
         this.maxDistance = maxDistance;
         this.players = players;
         this.currentPlayer = players.get(0);
-        this.playerDistanceMap = new HashMap<>();
-        this.piecePositionsMap = new HashMap<>();
+        this.positions = new ArrayList<>();
+        this.positionIndexMap = new HashMap<>();
+        this.pieceMasks = new long[Piece.values().length][0];
+        this.endZoneMasks = new long[Piece.values().length][0];
+        this.playerDistances = new int[players.size()];
+        this.playerDistanceTables = new byte[players.size()][];
+        this.piecePlayerIndices = new int[Piece.values().length];
         this.pieceEndZonePositionsMap = new HashMap<>();
         this.piecePlayerMap = new HashMap<>();
-        this.destinations = new HashSet<>();
-        this.playerFarthestPositionMap = new HashMap<>();
-        this.pointPositionMap = new HashMap<>();
-        this.piecePositionsMap.put(Piece.NONE, new HashSet<>());
-        for (Player player : players) {
-            this.playerDistanceMap.put(player, 0);
-            this.piecePositionsMap.put(player.getPiece(), new HashSet<>());
+        this.playerFarthestPositions = new VirtualPosition[players.size()];
+        this.undoStack = new int[UNDO_RECORD_SIZE];
+        this.zobristKey = Zobrist.turnKey(0);
+        Arrays.fill(piecePlayerIndices, -1);
+        for (int i = 0; i < players.size(); i++) {
+            Player player = players.get(i);
+            this.piecePlayerIndices[player.getPiece().ordinal()] = i;
             this.pieceEndZonePositionsMap.put(player.getPiece(), new HashSet<>());
             this.piecePlayerMap.put(player.getPiece(), player);
         }
@@ -61,6 +81,7 @@ public class State {
 
     /**
      * Creates a copy of the specified state.
+     * The board layout is shared with {@code other}, only the masks and the distances are copied.
      * @param other a state to copy
      */
     public State(State other) {
@@ -69,23 +90,23 @@ public class State {
         this.maxDistance = other.maxDistance;
         this.players = other.getPlayers();
         this.currentPlayer = other.getCurrentPlayer();
-        this.playerDistanceMap = new HashMap<>();
-        this.piecePositionsMap = new HashMap<>();
-        this.pieceEndZonePositionsMap = new HashMap<>();
-        this.piecePlayerMap = new HashMap<>();
-        this.destinations = new HashSet<>();
-        this.playerFarthestPositionMap = new HashMap<>();
-        this.destinationTree = null;
-        this.pointPositionMap = new HashMap<>(other.pointPositionMap);
-        this.piecePositionsMap.put(Piece.NONE, other.getPositions(Piece.NONE));
-        for (Player player : this.players) {
-            this.playerDistanceMap.put(player, other.playerDistanceMap.get(player));
-            this.piecePositionsMap.put(player.getPiece(), new HashSet<>(other.piecePositionsMap.get(player.getPiece())));
-            this.pieceEndZonePositionsMap.put(player.getPiece(), other.getEndZonePositions(player.getPiece()));
-            this.piecePlayerMap.put(player.getPiece(), player);
-            this.playerFarthestPositionMap.put(player, other.playerFarthestPositionMap.get(player));
+        this.positions = other.positions;
+        this.positionIndexMap = other.positionIndexMap;
+        this.pieceMasks = new long[other.pieceMasks.length][];
+        for (int i = 0; i < pieceMasks.length; i++) {
+            this.pieceMasks[i] = other.pieceMasks[i].clone();
         }
+        this.endZoneMasks = other.endZoneMasks;
+        this.playerDistances = other.playerDistances.clone();
+        this.playerDistanceTables = other.playerDistanceTables.clone();
+        this.piecePlayerIndices = other.piecePlayerIndices;
+        this.pieceEndZonePositionsMap = other.pieceEndZonePositionsMap;
+        this.piecePlayerMap = other.piecePlayerMap;
+        this.topology = other.topology;
+        this.playerFarthestPositions = other.playerFarthestPositions;
         this.center = other.center;
+        this.zobristKey = other.zobristKey;
+        this.undoStack = new int[UNDO_RECORD_SIZE];
     }
 
     /**
@@ -98,13 +119,28 @@ public class State {
         movePiece(moveToApply);
     }
 
+    // gets the precomputed tables of the board shape, null until initialized
+    Topology getTopology() {
+        return topology;
+    }
+
+    // gets the mask of the positions of piece, must not be modified
+    long[] getPieceMask(Piece piece) {
+        return pieceMasks[piece.ordinal()];
+    }
+
+    // gets the mask of the end zone positions of piece, must not be modified
+    long[] getEndZoneMask(Piece piece) {
+        return endZoneMasks[piece.ordinal()];
+    }
+
     /**
      * Gets the farthest position of the specified {@link Player} calculated by {@link #updateFarthestPositions()}.
      * @param player the player to get its farthest position
      * @return the farthest position of the specified player
      */
     public VirtualPosition getFarthestPosition(Player player) {
-        return playerFarthestPositionMap.get(player);
+        return playerFarthestPositions[players.indexOf(player)];
     }
 
     /**
@@ -120,7 +156,17 @@ public class State {
      * @return the number of pieces
      */
     public int getNumPieces() {
-        return piecePositionsMap.get(players.get(0).getPiece()).size();
+        return Bits.count(pieceMasks[players.get(0).getPiece().ordinal()]);
+    }
+
+    /**
+     * Gets the number of pieces of a player that are outside its end zone.
+     * @param piece the piece of the player
+     * @return the number of positions containing {@code piece} outside its end zone
+     */
+    public int getNumPiecesOutsideEndZone(Piece piece) {
+        long[] pieceMask = pieceMasks[piece.ordinal()];
+        return Bits.count(pieceMask) - Bits.countAnd(endZoneMasks[piece.ordinal()], pieceMask);
     }
 
     /**
@@ -168,14 +214,25 @@ public class State {
 
     /**
      * Gets the {@code player} sum of distances from its positions to its end zone,
-     * where distance is calculated by {@link #distance(VirtualPosition, VirtualPosition)}
+     * where distance is calculated by {@link #distanceToFreeEndZone(Piece, VirtualPosition)}.
+     * The sum is kept up to date by every move, so it is exact for the current positions.
      * @param player the player to calculate distance for
      * @return the player's distance
      * @see Player
      * @see VirtualPosition
      */
     public int getPlayerDistance(Player player) {
-        return playerDistanceMap.get(player);
+        return playerDistances[players.indexOf(player)];
+    }
+
+    /**
+     * Gets the Zobrist key of this state, a 64 bit hash of the piece placement and the player to move.
+     * The key is updated incrementally by every change to the board or the turn,
+     * so equal positions reached by different move orders have equal keys.
+     * @return the Zobrist key of this state
+     */
+    public long getZobristKey() {
+        return zobristKey;
     }
 
     /**
@@ -195,7 +252,12 @@ public class State {
      * @see VirtualPosition
      */
     public Set<VirtualPosition> getPositions(Piece piece) {
-        return new HashSet<>(piecePositionsMap.get(piece));
+        Set<VirtualPosition> positions = new HashSet<>();
+        long[] mask = pieceMasks[piece.ordinal()];
+        for (int index = Bits.nextSetBit(mask, 0); index >= 0; index = Bits.nextSetBit(mask, index + 1)) {
+            positions.add(this.positions.get(index));
+        }
+        return positions;
     }
 
     /** Sets the winner of this game to the first {@link Player} that returns {@code true} from {@link #isWinner(Player)}
@@ -211,14 +273,18 @@ public class State {
      * pre: should be calculated once, after initializing all positions, and before any move has been applied.
      */
     public void updateFarthestPositions() {
-        for (Player player : players) {
+        playerFarthestPositions = new VirtualPosition[players.size()];
+        for (int i = 0; i < players.size(); i++) {
             int maxDistance = Integer.MIN_VALUE;
-            for (VirtualPosition position : piecePositionsMap.get(player.getPiece())) {
-                for (VirtualPosition endZonePosition : pieceEndZonePositionsMap.get(player.getPiece())) {
-                    int distance = distance(position, endZonePosition);
+            long[] mask = pieceMasks[players.get(i).getPiece().ordinal()];
+            long[] endZoneMask = endZoneMasks[players.get(i).getPiece().ordinal()];
+            for (int index = Bits.nextSetBit(mask, 0); index >= 0; index = Bits.nextSetBit(mask, index + 1)) {
+                for (int endZoneIndex = Bits.nextSetBit(endZoneMask, 0); endZoneIndex >= 0;
+                     endZoneIndex = Bits.nextSetBit(endZoneMask, endZoneIndex + 1)) {
+                    int distance = distance(positions.get(index), positions.get(endZoneIndex));
                     if (distance > maxDistance) {
                         maxDistance = distance;
-                        playerFarthestPositionMap.put(player, endZonePosition);
+                        playerFarthestPositions[i] = positions.get(endZoneIndex);
                     }
                 }
             }
@@ -232,39 +298,41 @@ public class State {
      * @return the number of positions
      */
     public int getNumOtherPiecesInEndZone(Piece piece, Piece currentPiece) {
-        return (int) pieceEndZonePositionsMap.get(piece)
-                .stream()
-                .filter(position -> position.getPiece() != Piece.NONE && position.getPiece() != currentPiece)
-                .count();
+        long[] endZoneMask = endZoneMasks[piece.ordinal()];
+        return Bits.count(endZoneMask) - Bits.countAnd(endZoneMask, pieceMasks[Piece.NONE.ordinal()])
+                - Bits.countAnd(endZoneMask, pieceMasks[currentPiece.ordinal()]);
     }
 
     /**
-     * Takes a destination and calculates a path to the origin position.
-     * Destinations are leaves in the tree data structure this {@code destinations}
-     * and the root is the origin.
+     * Calculates the number of positions in the end zone of {@code piece} that are free.
+     * @param piece the piece to check its end zone
+     * @return the number of free positions
+     */
+    public int getNumFreeEndZonePositions(Piece piece) {
+        return Bits.countAnd(endZoneMasks[piece.ordinal()], pieceMasks[Piece.NONE.ordinal()]);
+    }
+
+    /**
+     * Takes a destination and calculates a path to the origin position,
+     * by following the predecessors recorded by {@link #updateDestinations(VirtualPosition)} back to the origin.
      * @param destination the {@link VirtualPosition} to calculate the path for
-     * @return the path calculated
+     * @return the path calculated, empty if {@code destination} is not a destination
      */
     public List<VirtualPosition> getMoveChain(VirtualPosition destination) {
-        List<VirtualPosition> moveChain = new ArrayList<>();
-        for (PositionTreeNode destinationNode : destinations) {
-            if (destinationNode.position == destination) {
-                while (destinationNode != null) {
-                    moveChain.add(0, destinationNode.position);
-                    destinationNode = destinationNode.parent;
-                }
-            }
+        if (!isDestination(destination)) {
+            return new ArrayList<>();
         }
-        return moveChain;
+        return getMoveChain(positionIndexMap.get(destination));
     }
 
     /**
      * Clears the destinations, to be used before calculating new destinations or after extracting all needed data.
-     * @see PositionTreeNode
      */
     public void clearDestinations() {
-        destinationTree = null;
-        destinations.clear();
+        if (destinationsOrigin >= 0) {
+            Arrays.fill(destinationsMask, 0);
+            destinationsOrigin = -1;
+        }
     }
 
     /**
@@ -272,10 +340,10 @@ public class State {
      * @param position the position to check
      * @return {@code true} if the position is a destination, {@code false} otherwise
      * @see VirtualPosition
-     * @see PositionTreeNode
      */
     public boolean isDestination(VirtualPosition position) {
-        return destinations.contains(new PositionTreeNode(position));
+        Integer index = positionIndexMap.get(position);
+        return destinationsOrigin >= 0 && index != null && Bits.test(destinationsMask, index);
     }
 
     /**
@@ -285,28 +353,35 @@ public class State {
      * @return {@code true} if the player won, {@code false} otherwise
      */
     public boolean isWinner(Player player) {
-        boolean hasPieceInEndZone = false;
-        for (VirtualPosition endZonePosition : getEndZonePositions(player.getPiece())) {
-            if (endZonePosition.getPiece() == Piece.NONE) {
-                return false;
-            } else if (endZonePosition.getPiece() == player.getPiece()) {
-                hasPieceInEndZone = true;
-            }
-        }
-        return hasPieceInEndZone;
+        long[] endZoneMask = endZoneMasks[player.getPiece().ordinal()];
+        return Bits.countAnd(endZoneMask, pieceMasks[Piece.NONE.ordinal()]) == 0
+                && Bits.countAnd(endZoneMask, pieceMasks[player.getPiece().ordinal()]) > 0;
     }
 
     /**
      * Changes the position's owner and updates the player distance accordingly.
      * for example when moving a piece or when initializing.
+     * Once the state is initialized the player distance is kept exact: a position entering the end zone of its piece
+     * changes which end zone positions are free, so the distance is then recalculated for all the player's pieces.
      * @param position the position to change its owner to {@code piece}
      * @param piece the new owner of the position
      */
     public void addPosition(VirtualPosition position, Piece piece) {
-        this.piecePositionsMap.get(piece).add(position);
-        if (piece != Piece.NONE) {
-            Player player = piecePlayerMap.get(piece);
-            playerDistanceMap.put(player, playerDistanceMap.get(player) + distanceToFreeEndZone(piece, position));
+        addPosition(indexOf(position), piece); // may grow the masks
+    }
+
+    // adds piece at the position of index, as addPosition(VirtualPosition, Piece)
+    private void addPosition(int index, Piece piece) {
+        if (piece != Piece.NONE && !Bits.test(pieceMasks[piece.ordinal()], index)) {
+            zobristKey ^= Zobrist.pieceKey(index, piece);
+        }
+        Bits.set(pieceMasks[piece.ordinal()], index);
+        if (piece != Piece.NONE && topology != null) {
+            if (Bits.test(endZoneMasks[piece.ordinal()], index)) {
+                updatePlayerDistance(piece);
+            } else {
+                playerDistances[piecePlayerIndices[piece.ordinal()]] += distanceToFreeEndZone(piece, index);
+            }
         }
     }
 
@@ -317,59 +392,188 @@ public class State {
      * @param piece the previous owner of the position
      */
     public void removePosition(VirtualPosition position, Piece piece) {
-        piecePositionsMap.get(piece).remove(position);
-        if (piece != Piece.NONE) {
-            Player player = piecePlayerMap.get(piece);
-            playerDistanceMap.put(player, playerDistanceMap.get(player) - distanceToFreeEndZone(piece, position));
+        removePosition(indexOf(position), piece);
+    }
+
+    // removes piece from the position of index, as removePosition(VirtualPosition, Piece)
+    private void removePosition(int index, Piece piece) {
+        if (piece != Piece.NONE && Bits.test(pieceMasks[piece.ordinal()], index)) {
+            zobristKey ^= Zobrist.pieceKey(index, piece);
+        }
+        Bits.clear(pieceMasks[piece.ordinal()], index);
+        if (piece != Piece.NONE && topology != null) {
+            if (Bits.test(endZoneMasks[piece.ordinal()], index)) {
+                updatePlayerDistance(piece);
+            } else {
+                playerDistances[piecePlayerIndices[piece.ordinal()]] -= distanceToFreeEndZone(piece, index);
+            }
         }
     }
 
     /**
-     * Updates this {@code piecePositionMap} according to the specified move.
+     * Updates the piece masks of this state according to the specified move.
      * @param move the move to apply
      */
     public void movePiece(Move move) {
-        Player player = piecePlayerMap.get(move.getPiece());
-        this.piecePositionsMap.get(Piece.NONE).remove(move.getDestination());
-        this.piecePositionsMap.get(Piece.NONE).add(move.getOrigin());
-        removePosition(move.getOrigin(), move.getPiece());
-        addPosition(move.getDestination(), move.getPiece());
+        movePiece(originIndex(move), destinationIndex(move), move.getPiece());
+    }
+
+    /**
+     * Updates the piece masks of this state according to the specified packed move.
+     * @param move the packed move to apply
+     * @see PackedMove
+     */
+    public void movePiece(int move) {
+        movePiece(PackedMove.getOrigin(move), PackedMove.getDestination(move), PackedMove.getPiece(move));
+    }
+
+    // moves piece from the position of index origin to the position of index destination
+    private void movePiece(int origin, int destination, Piece piece) {
+        Player player = players.get(piecePlayerIndices[piece.ordinal()]);
+        long[] freeMask = pieceMasks[Piece.NONE.ordinal()];
+        Bits.clear(freeMask, destination);
+        Bits.set(freeMask, origin);
+        removePosition(origin, piece);
+        addPosition(destination, piece);
         clearDestinations();
         if (isWinner(player)) {
-            playerDistanceMap.put(player, 0);
+            playerDistances[piecePlayerIndices[piece.ordinal()]] = 0;
             winner = player;
         }
     }
 
     /**
-     * Updates a map from coordinates to virtual positions.
-     * @see Coordinates
+     * Applies a move in place and records what is needed to undo it with {@link #unmakeMove(Move)}.
+     * Moves made with this method may be followed by {@link #changeTurn()} and must be undone in reverse order.
+     * @param move the move to apply
+     * @see #movePiece(Move)
+     */
+    public void makeMove(Move move) {
+        makeMove(originIndex(move), destinationIndex(move), move.getPiece());
+    }
+
+    /**
+     * Applies a packed move in place and records what is needed to undo it with {@link #unmakeMove(int)}.
+     * @param move the packed move to apply
+     * @see #makeMove(Move)
+     */
+    public void makeMove(int move) {
+        makeMove(PackedMove.getOrigin(move), PackedMove.getDestination(move), PackedMove.getPiece(move));
+    }
+
+    // records the undo record of a move and applies it
+    private void makeMove(int origin, int destination, Piece piece) {
+        if (undoSize + UNDO_RECORD_SIZE > undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, undoStack.length * 2);
+        }
+        undoStack[undoSize++] = playerDistances[piecePlayerIndices[piece.ordinal()]];
+        undoStack[undoSize++] = winner == null ? -1 : players.indexOf(winner);
+        undoStack[undoSize++] = players.indexOf(currentPlayer);
+        movePiece(origin, destination, piece);
+    }
+
+    /**
+     * Undoes the last move applied by {@link #makeMove(Move)}, restoring the positions, the player distances,
+     * the current player and the winner to what they were before the move.
+     * @param move the move to undo, must be the last move made
+     */
+    public void unmakeMove(Move move) {
+        unmakeMove(originIndex(move), destinationIndex(move), move.getPiece());
+    }
+
+    /**
+     * Undoes the last packed move applied by {@link #makeMove(int)}.
+     * @param move the packed move to undo, must be the last move made
+     * @see #unmakeMove(Move)
+     */
+    public void unmakeMove(int move) {
+        unmakeMove(PackedMove.getOrigin(move), PackedMove.getDestination(move), PackedMove.getPiece(move));
+    }
+
+    // restores the positions of a move and its undo record
+    private void unmakeMove(int origin, int destination, Piece piece) {
+        long[] freeMask = pieceMasks[Piece.NONE.ordinal()];
+        long[] pieceMask = pieceMasks[piece.ordinal()];
+        Bits.set(freeMask, destination);
+        Bits.clear(freeMask, origin);
+        Bits.clear(pieceMask, destination);
+        Bits.set(pieceMask, origin);
+        clearDestinations();
+        long[] endZoneMask = endZoneMasks[piece.ordinal()];
+        if (Bits.test(endZoneMask, origin) || Bits.test(endZoneMask, destination)) {
+            updateDistanceTable(piece);
+        }
+        zobristKey ^= Zobrist.pieceKey(destination, piece) ^ Zobrist.pieceKey(origin, piece)
+                ^ Zobrist.turnKey(players.indexOf(currentPlayer)) ^ Zobrist.turnKey(undoStack[undoSize - 1]);
+        currentPlayer = players.get(undoStack[--undoSize]);
+        int winnerIndex = undoStack[--undoSize];
+        winner = winnerIndex < 0 ? null : players.get(winnerIndex);
+        playerDistances[piecePlayerIndices[piece.ordinal()]] = undoStack[--undoSize];
+    }
+
+    /**
+     * Checks whether all the positions containing {@code piece} are in its end zone.
+     * @param piece the piece to check
+     * @return {@code true} if every position of {@code piece} is in its end zone, {@code false} otherwise
+     */
+    public boolean isInEndZone(Piece piece) {
+        return Bits.containsAll(endZoneMasks[piece.ordinal()], pieceMasks[piece.ordinal()]);
+    }
+
+    /**
+     * Updates the precomputed tables of the board shape: distances, neighbors and hop landings by position index,
+     * and calculates the exact distance of every player from them.
+     * pre: should be called once, after initializing all positions and end zones, and before any move has been applied.
      * @see VirtualPosition
      */
     public void updatePointPositionMap() {
-        for (Piece piece : piecePositionsMap.keySet()) {
-            for (VirtualPosition position : piecePositionsMap.get(piece)) {
-                pointPositionMap.put(new Coordinates(position.getRow(), position.getCol()), position);
-            }
+        topology = Topology.of(positions, directions);
+        for (Player player : players) {
+            updatePlayerDistance(player.getPiece());
         }
     }
 
+    // looks up the distances to the end zone positions of piece that do not contain piece,
+    // to be called whenever the positions of piece in its end zone change
+    private void updateDistanceTable(Piece piece) {
+        long[] endZoneMask = endZoneMasks[piece.ordinal()];
+        long[] pieceMask = pieceMasks[piece.ordinal()];
+        long[] freeEndZoneMask = new long[endZoneMask.length];
+        for (int i = 0; i < endZoneMask.length; i++) {
+            freeEndZoneMask[i] = endZoneMask[i] & ~pieceMask[i];
+        }
+        playerDistanceTables[piecePlayerIndices[piece.ordinal()]] =
+                Bits.count(freeEndZoneMask) == 0 ? null : topology.distancesTo(freeEndZoneMask);
+    }
+
+    // updates the distance table of piece and recalculates its player distance from it
+    private void updatePlayerDistance(Piece piece) {
+        updateDistanceTable(piece);
+        long[] mask = pieceMasks[piece.ordinal()];
+        int distance = 0;
+        for (int index = Bits.nextSetBit(mask, 0); index >= 0; index = Bits.nextSetBit(mask, index + 1)) {
+            distance += distanceToFreeEndZone(piece, index);
+        }
+        playerDistances[piecePlayerIndices[piece.ordinal()]] = distance;
+    }
+
     /**
      * Calculates and updates the position which its coordinates are closest to the average of all empty positions.
      * pre: should be calculated once, after initializing all positions, and before any move has been applied.
      */
     public void updateCenter() {
+        Set<VirtualPosition> freePositions = getPositions(Piece.NONE);
         double rowSum = 0;
         double colSum = 0;
-        for (VirtualPosition position : piecePositionsMap.get(Piece.NONE)) {
+        for (VirtualPosition position : freePositions) {
             rowSum += position.getRow();
             colSum += position.getCol();
         }
-        double rowAverage = rowSum / piecePositionsMap.get(Piece.NONE).size();
-        double colAverage = colSum / piecePositionsMap.get(Piece.NONE).size();
+        double rowAverage = rowSum / freePositions.size();
+        double colAverage = colSum / freePositions.size();
         VirtualPosition center = null;
         double distance = Integer.MAX_VALUE;
-        for (VirtualPosition position : piecePositionsMap.get(Piece.NONE)) {
+        for (VirtualPosition position : freePositions) {
             double distanceFromCenter = Math.abs(position.getRow() - rowAverage)
                     + Math.abs(position.getCol() - colAverage);
             if (distanceFromCenter < distance) {
@@ -389,56 +593,71 @@ public class State {
      * @see Piece
      */
     public void addEndZonePosition(VirtualPosition position, Piece endZonePiece) {
+        int index = indexOf(position); // may grow the masks
+        Bits.set(endZoneMasks[endZonePiece.ordinal()], index);
         pieceEndZonePositionsMap.get(endZonePiece).add(position);
     }
 
     /**
      * Calculates and the distance between two {@code Position} objects.
+     * Once the state is initialized the distance is read from a table shared by all states of the board shape.
      * @param position1 first position.
      * @param position2 second position.
      * @return the distance between the positions.
      * @see VirtualPosition
      */
     public int distance(VirtualPosition position1, VirtualPosition position2) {
-        int row = position1.getRow();
-        int col = position1.getCol();
-        int nextRow = row;
-        int nextCol = col;
-        int stepCounter = 0;
-        while (row != position2.getRow() || col != position2.getCol()) {
-            int minDistance = Integer.MAX_VALUE;
-            for (int[] direction : directions) {
-                int distance = Math.abs(position2.getRow() - (row + direction[0]))
-                        + Math.abs(position2.getCol() - (col + direction[1]));
-                if (distance < minDistance) {
-                    minDistance = distance;
-                    nextRow = row + direction[0];
-                    nextCol = col + direction[1];
-                }
+        if (topology != null) {
+            Integer index1 = positionIndexMap.get(position1);
+            Integer index2 = positionIndexMap.get(position2);
+            if (index1 != null && index2 != null) {
+                return topology.distance(index1, index2);
             }
-            row = nextRow;
-            col = nextCol;
-            stepCounter++;
         }
-        return stepCounter;
+        return Topology.walkDistance(position1.getRow(), position1.getCol(),
+                position2.getRow(), position2.getCol(), directions);
     }
 
     /**
-     * Calculates the number of steps from {@code origin} to the closest end zone position of {@code piece},
-     * where a step is a move to a free or occupied neighbor position.
+     * Calculates the number of steps from {@code origin} to the closest end zone position of {@code piece}
+     * that does not contain {@code piece}, where a step is a move to a free or occupied neighbor position.
+     * Once the state is initialized the distance is read from a table shared by all states with the same positions
+     * of {@code piece} in its end zone.
      * @param piece the piece to calculate the distance to its end zone
      * @param origin the position to calculate the distance from
      * @return the distance to the closest end zone position of {@code piece}
      * @see VirtualPosition
      */
     public int distanceToFreeEndZone(Piece piece, VirtualPosition origin) {
-        if (pieceEndZonePositionsMap.get(piece).contains(origin)) {
+        return distanceToFreeEndZone(piece, indexOf(origin));
+    }
+
+    /**
+     * Calculates the distance from a position to the closest end zone position of a piece that does not contain it,
+     * by the dense index of the position.
+     * Once the state is initialized the distance is read from the distance table of the piece's player.
+     * @param piece the piece whose end zone is measured
+     * @param index the dense index of the position, as given by a packed move
+     * @return the distance to the closest free end zone position of {@code piece},
+     *         or {@link Integer#MAX_VALUE} if there is none
+     * @see PackedMove
+     */
+    public int distanceToFreeEndZone(Piece piece, int index) {
+        long[] endZoneMask = endZoneMasks[piece.ordinal()];
+        if (Bits.test(endZoneMask, index)) {
             return 0;
         }
+        int playerIndex = piecePlayerIndices[piece.ordinal()];
+        if (topology != null && playerIndex >= 0) {
+            byte[] distances = playerDistanceTables[playerIndex];
+            return distances == null ? Integer.MAX_VALUE : distances[index];
+        }
+        long[] pieceMask = pieceMasks[piece.ordinal()];
         int distanceToFreeEndZone = Integer.MAX_VALUE;
-        for (VirtualPosition endZonePosition : getEndZonePositions(piece)) {
-            if (endZonePosition.getPiece() != piece) {
-                int distance = distance(origin, endZonePosition);
+        for (int endZoneIndex = Bits.nextSetBit(endZoneMask, 0); endZoneIndex >= 0;
+             endZoneIndex = Bits.nextSetBit(endZoneMask, endZoneIndex + 1)) {
+            if (!Bits.test(pieceMask, endZoneIndex)) {
+                int distance = distance(positions.get(index), positions.get(endZoneIndex));
                 if (distance < distanceToFreeEndZone) {
                     distanceToFreeEndZone = distance;
                 }
@@ -458,103 +677,127 @@ public class State {
      * Changes the turn to the next {@link Player}.
      */
     public void changeTurn() {
-        currentPlayer = nextTurn();
+        Player nextPlayer = nextTurn();
+        zobristKey ^= Zobrist.turnKey(players.indexOf(currentPlayer)) ^ Zobrist.turnKey(players.indexOf(nextPlayer));
+        currentPlayer = nextPlayer;
+    }
+
+    // * gets the dense index of a position
+    // * while the state is initialized positions not seen before are given the next free index. once the topology
+    //   is built the indices are shared by every state of the board, so a position that is not on the board throws
+    //   an IllegalArgumentException
+    private int indexOf(VirtualPosition position) {
+        Integer index = positionIndexMap.get(position);
+        if (index == null) {
+            if (topology != null) {
+                throw new IllegalArgumentException("position not on the board: " + position);
+            }
+            index = positions.size();
+            positions.add(position);
+            positionIndexMap.put(position, index);
+            ensureCapacity(positions.size());
+        }
+        return index;
     }
 
-    // checks if current position has a piece in it
-    private boolean isOccupied(VirtualPosition position) {
-        for (Player player : players) {
-            if (piecePositionsMap.get(player.getPiece()).contains(position)) {
-                return true;
+    // grows all masks so they can hold numPositions bits, only needed while positions are being added
+    private void ensureCapacity(int numPositions) {
+        int numWords = Bits.numWords(numPositions);
+        if (pieceMasks[0].length < numWords) {
+            for (int i = 0; i < pieceMasks.length; i++) {
+                pieceMasks[i] = Arrays.copyOf(pieceMasks[i], numWords);
+                endZoneMasks[i] = Arrays.copyOf(endZoneMasks[i], numWords);
             }
         }
-        return false;
     }
 
-    // checks if current position hasn't got a piece in it
-    private boolean isFree(VirtualPosition position) {
-        return piecePositionsMap.get(Piece.NONE).contains(position);
+    // gets the dense index of the origin of a move, without a lookup if the move was generated by a state of this board
+    private int originIndex(Move move) {
+        return move.isIndexedBy(positions) ? move.getOriginIndex() : indexOf(move.getOrigin());
     }
 
-    // adds all legal hop destinations to the destinations data structure
-    private void updateHopDestinations(VirtualPosition origin) {
-        updateHopDestinationsRecursive(origin, destinations, destinationTree);
+    // gets the dense index of the destination of a move, without a lookup if the move was generated by a state of
+    // this board
+    private int destinationIndex(Move move) {
+        return move.isIndexedBy(positions) ? move.getDestinationIndex() : indexOf(move.getDestination());
     }
 
-    // helper for updateHopDestinations method
-    private void updateHopDestinationsRecursive(VirtualPosition origin, Set<PositionTreeNode> destinations, PositionTreeNode parent) {
-        PositionTreeNode child = new PositionTreeNode(origin, parent);
-        if (!destinations.contains(child)) { // not visiting same node twice
-            destinations.add(child);
-            if (parent != null) {
-                parent.addChild(child);
-            }
-            // takes all single hop destinations and continues recursively
-            Set<VirtualPosition> singleHopDestinations = getSingleHopDestinations(origin);
-            for (VirtualPosition destination : singleHopDestinations) {
-                updateHopDestinationsRecursive(destination, destinations, child);
-            }
-        }
+    // checks if current position has a piece in it
+    private boolean isOccupied(int index) {
+        return !Bits.test(pieceMasks[Piece.NONE.ordinal()], index);
     }
 
-    // calculates and returns a set of single hop destination originating at the origin parameter
-    private Set<VirtualPosition> getSingleHopDestinations(VirtualPosition origin) {
-        Set<VirtualPosition> destinations = new HashSet<>();
-        for (int[] direction : directions) {
-            Coordinates neighborLocation =
-                    new Coordinates(origin.getRow() + direction[0], origin.getCol() + direction[1]);
-            Coordinates nextNeighborLocation =
-                    new Coordinates(origin.getRow() + 2*direction[0], origin.getCol() + 2*direction[1]);
-            VirtualPosition neighbor = pointPositionMap.get(neighborLocation);
-            VirtualPosition nextNeighbor = pointPositionMap.get(nextNeighborLocation);
-            if (isOccupied(neighbor) && isFree(nextNeighbor)) {
-                destinations.add(nextNeighbor);
-            }
+    // checks if current position hasn't got a piece in it
+    private boolean isFree(int index) {
+        return Bits.test(pieceMasks[Piece.NONE.ordinal()], index);
+    }
+
+    // calculates the destinations of legal moves originating at origin and the predecessor of each destination.
+    // hop chains are searched breadth first with a queue, so each destination is reached once by a shortest chain,
+    // then the free neighbors which are not reachable by hops are added as single steps.
+    private void updateDestinations(int origin) {
+        if (destinationsMask == null) {
+            destinationsMask = new long[pieceMasks[0].length];
+            predecessors = new int[positions.size()];
+            hopQueue = new int[positions.size()];
         }
-        return destinations;
-    }
-
-    // adds legal neighbor destinations to the destinations data structure
-    private void updateNeighborDestinations(VirtualPosition origin) {
-        for (int[] direction : directions) { // a neighbor is an empty position one step away from the origin
-            VirtualPosition neighbor =
-                    pointPositionMap.get(new Coordinates(origin.getRow() + direction[0], origin.getCol() + direction[1]));
-            if (isFree(neighbor)) {
-                PositionTreeNode positionTreeNode = new PositionTreeNode(neighbor);
-                destinations.add(positionTreeNode);
-                if (destinationTree == null) {
-                    destinationTree = new PositionTreeNode(origin);
+        clearDestinations();
+        destinationsOrigin = origin;
+        Bits.set(destinationsMask, origin); // the origin is visited but is not a destination
+        int head = 0;
+        int tail = 0;
+        hopQueue[tail++] = origin;
+        while (head < tail) {
+            int position = hopQueue[head++];
+            int[] neighbors = topology.getNeighbors(position);
+            int[] jumps = topology.getJumps(position);
+            for (int direction = 0; direction < jumps.length; direction++) {
+                int landing = jumps[direction];
+                if (landing >= 0 && !Bits.test(destinationsMask, landing)
+                        && isOccupied(neighbors[direction]) && isFree(landing)) {
+                    Bits.set(destinationsMask, landing);
+                    predecessors[landing] = position;
+                    hopQueue[tail++] = landing;
                 }
-                destinationTree.addChild(positionTreeNode);
-                positionTreeNode.parent = destinationTree;
             }
         }
+        for (int neighbor : topology.getNeighbors(origin)) { // a neighbor is an empty position one step away from the origin
+            if (neighbor >= 0 && isFree(neighbor) && !Bits.test(destinationsMask, neighbor)) {
+                Bits.set(destinationsMask, neighbor);
+                predecessors[neighbor] = origin;
+            }
+        }
+        Bits.clear(destinationsMask, origin);
+    }
+
+    // builds the move chain of a destination calculated by updateDestinations, from the origin to the destination
+    private List<VirtualPosition> getMoveChain(int destination) {
+        return Move.buildMoveChain(destinationsOrigin, destination, predecessors, positions);
     }
 
     /**
-     * Updates {@code this.destinations} to hold the set of destinations of legal moves
-     * that originate at {@code origin}.
+     * Updates the destinations to hold the set of destinations of legal moves
+     * that originate at {@code origin}, replacing any previously calculated destinations.
      *
      * @param origin a position to update legal destinations for
      * @see VirtualPosition
-     * @see PositionTreeNode
      */
     public void updateDestinations(VirtualPosition origin) {
-        updateHopDestinations(origin);
-        updateNeighborDestinations(origin);
-        destinations.remove(new PositionTreeNode(origin));
+        updateDestinations(positionIndexMap.get(origin));
     }
 
     /**
      * Extracts positions from last calculated destinations and returns them.
      * @return a list containing the last calculated destinations for some chosen origin
      * @see VirtualPosition
-     * @see PositionTreeNode
      */
     public List<VirtualPosition> getDestinations() {
         List<VirtualPosition> destinations = new ArrayList<>();
-        for (PositionTreeNode destinationNode: this.destinations) {
-            destinations.add(destinationNode.position);
+        if (destinationsOrigin >= 0) {
+            for (int index = Bits.nextSetBit(destinationsMask, 0); index >= 0;
+                 index = Bits.nextSetBit(destinationsMask, index + 1)) {
+                destinations.add(positions.get(index));
+            }
         }
         return destinations;
     }
@@ -562,79 +805,80 @@ public class State {
     /**
      * Takes a {@link Piece} and calculates all the possible moves originating at a position containing this piece.
      * @param  piece the piece to calculate moves for
-     * @return a set containing all possible moves of piece parameter
+     * @return a set containing all possible moves of piece parameter,
+     *         iterated in the order of the origin and then the destination position indices
      * @see Move
      */
     public Set<Move> getMoves(Piece piece) {
-        Set<Move> moves = new HashSet<>();
-        for (VirtualPosition source : getPositions(piece)) {
-            clearDestinations();
-            updateDestinations(source);
-            for (PositionTreeNode destination : destinations) {
-                moves.add(new Move(source, destination.position, piece, getMoveChain(destination.position)));
+
+        Set<Move> moves = new LinkedHashSet<>();
+        long[] mask = pieceMasks[piece.ordinal()];
+        for (int index = Bits.nextSetBit(mask, 0); index >= 0; index = Bits.nextSetBit(mask, index + 1)) {
+            VirtualPosition source = positions.get(index);
+            updateDestinations(index);
+            int[] predecessors = null; // a snapshot shared by all the moves of this origin
+            for (int destination = Bits.nextSetBit(destinationsMask, 0); destination >= 0;
+                 destination = Bits.nextSetBit(destinationsMask, destination + 1)) {
+                if (predecessors == null) {
+                    predecessors = this.predecessors.clone();
+                }
+                moves.add(new Move(source, positions.get(destination), piece, index, destination,
+                        predecessors, positions));
             }
         }
         return moves;
     }
 
     /**
-     * Represents a tree node holding a position.
-     * Used by State class as a data structure to hold calculated possible destinations.
-     * @see VirtualPosition
-     */
-    private static class PositionTreeNode {
-
-        private final VirtualPosition position;
-        private PositionTreeNode parent;
-        private final List<PositionTreeNode> children;
-
-        private PositionTreeNode(VirtualPosition position, PositionTreeNode parent) {
-            this(position);
-            this.parent = parent;
-        }
-
-        private PositionTreeNode(VirtualPosition position) {
-            this.position = position;
-            this.children = new ArrayList<>();
-        }
-
-        private void addChild(PositionTreeNode child) {
-            children.add(child);
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            // compares the position field only
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            PositionTreeNode that = (PositionTreeNode) o;
-            return position.equals(that.position);
+     * Calculates all the possible moves of a {@link Piece} as packed moves, in the order of {@link #getMoves(Piece)},
+     * without allocating any object.
+     * Several plies of a search can share a buffer, each writing its moves after the moves of the previous ply.
+     * @param piece the piece to calculate moves for
+     * @param moves the buffer the packed moves are written to, with room for {@link #getMaxNumMoves()} moves
+     *              from {@code offset}
+     * @param offset the index in {@code moves} of the first move written
+     * @return the index in {@code moves} following the last move written
+     * @see PackedMove
+     */
+    public int generateMoves(Piece piece, int[] moves, int offset) {
+        long[] mask = pieceMasks[piece.ordinal()];
+        for (int index = Bits.nextSetBit(mask, 0); index >= 0; index = Bits.nextSetBit(mask, index + 1)) {
+            updateDestinations(index);
+            for (int destination = Bits.nextSetBit(destinationsMask, 0); destination >= 0;
+                 destination = Bits.nextSetBit(destinationsMask, destination + 1)) {
+                moves[offset++] = PackedMove.of(index, destination, piece);
+            }
         }
+        return offset;
+    }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(position);
-        }
+    /**
+     * Gets the max number of moves {@link #generateMoves(Piece, int[], int)} may write for a piece.
+     * @return the number of pieces of a player times the number of positions
+     */
+    public int getMaxNumMoves() {
+        return getNumPieces() * positions.size();
+    }
 
-        @Override
-        public String toString() {
-            StringBuilder buffer = new StringBuilder();
-            print(buffer, "", "");
-            return buffer.toString();
-        }
+    /**
+     * Turns a packed move into a {@link Move} for the UI and the public API, with its move chain.
+     * @param move a packed move that is legal in this state
+     * @return the move, which materializes its move chain only when it is requested
+     */
+    public Move toMove(int move) {
+        int origin = PackedMove.getOrigin(move);
+        int destination = PackedMove.getDestination(move);
+        updateDestinations(origin);
+        return new Move(positions.get(origin), positions.get(destination), PackedMove.getPiece(move), origin, destination,
+                predecessors.clone(), positions);
+    }
 
-        private void print(StringBuilder buffer, String prefix, String childrenPrefix) {
-            buffer.append(prefix);
-            buffer.append(position);
-            buffer.append('\n');
-            for (Iterator<PositionTreeNode> it = children.iterator(); it.hasNext();) {
-                PositionTreeNode next = it.next();
-                if (it.hasNext()) {
-                    next.print(buffer, childrenPrefix + "|-- ", childrenPrefix + "|   ");
-                } else {
-                    next.print(buffer, childrenPrefix + "|-- ", childrenPrefix + "    ");
-                }
-            }
-        }
+    /**
+     * Packs a {@link Move} of this state's board.
+     * @param move the move to pack
+     * @return the packed move
+     */
+    public int pack(Move move) {
+        return PackedMove.of(originIndex(move), destinationIndex(move), move.getPiece());
     }
 }
@@ -0,0 +1,306 @@
+package chinesecheckers.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the precomputed tables of a board shape, indexed by the dense position indices used by {@link State}.
+ * A topology is built once per board shape and shared by all states of that shape.
+ */
+final class Topology {
+
+    private static final Map<Key, Topology> topologies = new ConcurrentHashMap<>(); // caches a topology per board shape
+
+    private final int numPositions;
+    private final int numDirections;
+    private final byte[] distances; // distances[i * numPositions + j] is the distance between positions i and j
+    private final int[][] neighbors; // neighbors[i][d] is the position one step from i in direction d, -1 if off board
+    private final int[][] jumps; // jumps[i][d] is the position two steps from i in direction d, -1 if off board
+    private final Map<BitSet, byte[]> targetDistances = new ConcurrentHashMap<>(); // memoizes distancesTo per target set
+    private final long fingerprint; // identifies the positions and directions across runs
+    private final int[][] symmetries; // permutations of the position indices mapping the board onto itself
+
+    private Topology(int[] rows, int[] cols, int[][] directions) {
+        this.numPositions = rows.length;
+        this.numDirections = directions.length;
+        this.distances = new byte[numPositions * numPositions];
+        this.neighbors = new int[numPositions][numDirections];
+        this.jumps = new int[numPositions][numDirections];
+        this.fingerprint = fingerprint(rows, cols, directions);
+        Map<Coordinates, Integer> pointIndexMap = new HashMap<>();
+        for (int i = 0; i < numPositions; i++) {
+            pointIndexMap.put(new Coordinates(rows[i], cols[i]), i);
+        }
+        for (int i = 0; i < numPositions; i++) {
+            for (int d = 0; d < numDirections; d++) {
+                Integer neighbor = pointIndexMap.get(new Coordinates(rows[i] + directions[d][0], cols[i] + directions[d][1]));
+                Integer jump = pointIndexMap.get(new Coordinates(rows[i] + 2 * directions[d][0], cols[i] + 2 * directions[d][1]));
+                neighbors[i][d] = neighbor == null ? -1 : neighbor;
+                jumps[i][d] = neighbor == null || jump == null ? -1 : jump;
+            }
+        }
+        this.symmetries = symmetries(rows, cols, directions, pointIndexMap);
+        for (int i = 0; i < numPositions; i++) {
+            for (int j = 0; j < numPositions; j++) {
+                distances[i * numPositions + j] = (byte) walkDistance(rows[i], cols[i], rows[j], cols[j], directions);
+            }
+        }
+    }
+
+    /**
+     * Gets the topology of the board made of {@code positions}, building it on first use.
+     * @param positions the positions of the board ordered by their dense index
+     * @param directions the directions in which a piece can move
+     * @return the topology shared by all boards with the same positions and directions
+     */
+    static Topology of(List<VirtualPosition> positions, int[][] directions) {
+        int[] rows = new int[positions.size()];
+        int[] cols = new int[positions.size()];
+        for (int i = 0; i < positions.size(); i++) {
+            rows[i] = positions.get(i).getRow();
+            cols[i] = positions.get(i).getCol();
+        }
+        return topologies.computeIfAbsent(new Key(rows, cols, directions),
+                key -> new Topology(rows, cols, directions));
+    }
+
+    /**
+     * Gets the number of positions on the board.
+     * @return the number of positions
+     */
+    int getNumPositions() {
+        return numPositions;
+    }
+
+    /**
+     * Gets the number of directions in which a piece can move.
+     * @return the number of directions
+     */
+    int getNumDirections() {
+        return numDirections;
+    }
+
+    /**
+     * Gets a hash of the positions, in dense index order, and of the directions, which unlike {@link #hashCode()}
+     * is the same in every run, so files precomputed for a board shape can be matched to it.
+     * @return the fingerprint of the board shape
+     */
+    long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Gets the symmetries of the board: the permutations of the position indices induced by the rotations and
+     * reflections around the center of the board that map the directions onto the directions and the board onto itself.
+     * @return the permutations, mapping each position index to the index of its image, the identity first.
+     *         the arrays must not be modified
+     */
+    int[][] getSymmetries() {
+        return symmetries;
+    }
+
+    /**
+     * Gets the neighbors of a position, indexed by direction.
+     * @param index the index of the position
+     * @return the indices of the neighbors, where {@code -1} means the neighbor is off board
+     */
+    int[] getNeighbors(int index) {
+        return neighbors[index];
+    }
+
+    /**
+     * Gets the positions a hop from a position would land at, indexed by direction.
+     * @param index the index of the position
+     * @return the indices of the landing positions, where {@code -1} means the hop leaves the board
+     */
+    int[] getJumps(int index) {
+        return jumps[index];
+    }
+
+    /**
+     * Gets the precomputed distance between two positions.
+     * @param index1 the index of the first position
+     * @param index2 the index of the second position
+     * @return the distance between the positions
+     * @see #walkDistance(int, int, int, int, int[][])
+     */
+    int distance(int index1, int index2) {
+        return distances[index1 * numPositions + index2];
+    }
+
+    /**
+     * Gets the distance from every position to the closest of a set of target positions.
+     * The distances are calculated once per target set and shared, so the returned array must not be modified.
+     * @param targets the mask of the target positions, must not be empty
+     * @return the distances indexed by position
+     */
+    byte[] distancesTo(long[] targets) {
+        return targetDistances.computeIfAbsent(BitSet.valueOf(targets), key -> {
+            byte[] distances = new byte[numPositions];
+            Arrays.fill(distances, Byte.MAX_VALUE);
+            for (int target = key.nextSetBit(0); target >= 0; target = key.nextSetBit(target + 1)) {
+                for (int i = 0; i < numPositions; i++) {
+                    distances[i] = (byte) Math.min(distances[i], distance(i, target));
+                }
+            }
+            return distances;
+        });
+    }
+
+    /**
+     * Calculates the distance between two coordinates by walking greedily towards the target,
+     * where each step is taken in the direction that minimizes the remaining row and column difference.
+     * @param row1 the row of the first position
+     * @param col1 the column of the first position
+     * @param row2 the row of the second position
+     * @param col2 the column of the second position
+     * @param directions the directions in which a piece can move
+     * @return the number of steps walked
+     */
+    static int walkDistance(int row1, int col1, int row2, int col2, int[][] directions) {
+        int row = row1;
+        int col = col1;
+        int nextRow = row;
+        int nextCol = col;
+        int stepCounter = 0;
+        while (row != row2 || col != col2) {
+            int minDistance = Integer.MAX_VALUE;
+            for (int[] direction : directions) {
+                int distance = Math.abs(row2 - (row + direction[0])) + Math.abs(col2 - (col + direction[1]));
+                if (distance < minDistance) {
+                    minDistance = distance;
+                    nextRow = row + direction[0];
+                    nextCol = col + direction[1];
+                }
+            }
+            row = nextRow;
+            col = nextCol;
+            stepCounter++;
+        }
+        return stepCounter;
+    }
+
+    // * finds the permutations returned by getSymmetries().
+    // * a linear map is determined by the images of two independent directions, so every pair of directions is tried
+    //   as the images of the first direction and the first direction independent of it. coordinates are taken relative
+    //   to the center and scaled by the number of positions and the determinant, so the arithmetic stays exact.
+    private static int[][] symmetries(int[] rows, int[] cols, int[][] directions, Map<Coordinates, Integer> pointIndexMap) {
+        int numPositions = rows.length;
+        long rowSum = Arrays.stream(rows).asLongStream().sum();
+        long colSum = Arrays.stream(cols).asLongStream().sum();
+        int[] d0 = directions[0];
+        int[] d1 = null;
+        for (int[] direction : directions) {
+            if (d0[0] * direction[1] - d0[1] * direction[0] != 0) {
+                d1 = direction;
+                break;
+            }
+        }
+        List<int[]> symmetries = new ArrayList<>();
+        int[] identity = new int[numPositions];
+        Arrays.setAll(identity, i -> i);
+        symmetries.add(identity);
+        if (d1 == null) {
+            return symmetries.toArray(new int[0][]);
+        }
+        long determinant = (long) d0[0] * d1[1] - (long) d0[1] * d1[0];
+        Set<Coordinates> directionSet = new HashSet<>();
+        for (int[] direction : directions) {
+            directionSet.add(new Coordinates(direction[0], direction[1]));
+        }
+        for (int[] e0 : directions) {
+            for (int[] e1 : directions) {
+                // the map times the determinant, as the images of the directions times the adjugate of d0 and d1
+                long m00 = (long) e0[0] * d1[1] - (long) e1[0] * d0[1];
+                long m01 = (long) e1[0] * d0[0] - (long) e0[0] * d1[0];
+                long m10 = (long) e0[1] * d1[1] - (long) e1[1] * d0[1];
+                long m11 = (long) e1[1] * d0[0] - (long) e0[1] * d1[0];
+                boolean mapsDirections = true;
+                for (int[] direction : directions) {
+                    long row = m00 * direction[0] + m01 * direction[1];
+                    long col = m10 * direction[0] + m11 * direction[1];
+                    mapsDirections &= row % determinant == 0 && col % determinant == 0
+                            && directionSet.contains(new Coordinates((int) (row / determinant), (int) (col / determinant)));
+                }
+                if (!mapsDirections) {
+                    continue;
+                }
+                int[] symmetry = new int[numPositions];
+                for (int i = 0; i < numPositions && symmetry != null; i++) {
+                    long row = numPositions * (long) rows[i] - rowSum;
+                    long col = numPositions * (long) cols[i] - colSum;
+                    long imageRow = m00 * row + m01 * col;
+                    long imageCol = m10 * row + m11 * col;
+                    Integer image = null;
+                    if (imageRow % determinant == 0 && imageCol % determinant == 0) {
+                        imageRow = imageRow / determinant + rowSum;
+                        imageCol = imageCol / determinant + colSum;
+                        if (imageRow % numPositions == 0 && imageCol % numPositions == 0) {
+                            image = pointIndexMap.get(new Coordinates((int) (imageRow / numPositions),
+                                    (int) (imageCol / numPositions)));
+                        }
+                    }
+                    if (image == null) {
+                        symmetry = null;
+                    } else {
+                        symmetry[i] = image;
+                    }
+                }
+                if (symmetry != null && !Arrays.equals(symmetry, identity)) {
+                    symmetries.add(symmetry);
+                }
+            }
+        }
+        return symmetries.toArray(new int[0][]);
+    }
+
+    // hashes the positions and directions with 64 bit FNV-1a
+    private static long fingerprint(int[] rows, int[] cols, int[][] directions) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < rows.length; i++) {
+            hash = (hash ^ rows[i]) * 0x100000001b3L;
+            hash = (hash ^ cols[i]) * 0x100000001b3L;
+        }
+        for (int[] direction : directions) {
+            hash = (hash ^ direction[0]) * 0x100000001b3L;
+            hash = (hash ^ direction[1]) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // identifies a board shape by its positions and directions
+    private static class Key {
+
+        private final int[] rows;
+        private final int[] cols;
+        private final int[][] directions;
+
+        private Key(int[] rows, int[] cols, int[][] directions) {
+            this.rows = rows;
+            this.cols = cols;
+            this.directions = directions;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Arrays.equals(rows, key.rows)
+                    && Arrays.equals(cols, key.cols)
+                    && Arrays.deepEquals(directions, key.directions);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * Arrays.hashCode(rows) + Arrays.hashCode(cols)) + Arrays.deepHashCode(directions);
+        }
+    }
+}
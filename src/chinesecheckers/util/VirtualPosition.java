@@ -1,7 +1,5 @@
 package chinesecheckers.util;
 
-import java.util.Objects;
-
 /**
  * Represents a position on the board.
  */
@@ -69,6 +67,6 @@ public class VirtualPosition {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, col);
+        return 31 * (31 + row) + col; // same value as Objects.hash(row, col) without boxing
     }
 }
@@ -0,0 +1,60 @@
+package chinesecheckers.util;
+
+/**
+ * Holds the random keys used to compute the Zobrist key of a {@link State}.
+ * The key of a state is the XOR of the keys of every (position index, piece) pair on the board
+ * and the key of the player to move, so applying or undoing a move updates it with a few XORs.
+ * The keys are generated from a fixed seed, so keys are stable between runs.
+ */
+final class Zobrist {
+
+    private static final int MAX_POSITIONS = 256;
+    private static final int MAX_PLAYERS = 6;
+    private static final long SEED = 0x636865636b657273L;
+
+    private static final long[][] pieceKeys = new long[MAX_POSITIONS][Piece.values().length];
+    private static final long[] turnKeys = new long[MAX_PLAYERS];
+
+    static { // generate keys with splitmix64
+        long seed = SEED;
+        for (long[] positionKeys : pieceKeys) {
+            for (int piece = 0; piece < positionKeys.length; piece++) {
+                seed += 0x9e3779b97f4a7c15L;
+                positionKeys[piece] = mix(seed);
+            }
+        }
+        for (int player = 0; player < MAX_PLAYERS; player++) {
+            seed += 0x9e3779b97f4a7c15L;
+            turnKeys[player] = mix(seed);
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Gets the key of a piece standing at a position.
+     * @param index the dense index of the position
+     * @param piece the piece standing at the position
+     * @return the key of the pair
+     */
+    static long pieceKey(int index, Piece piece) {
+        return pieceKeys[index][piece.ordinal()];
+    }
+
+    /**
+     * Gets the key of the player to move.
+     * @param playerIndex the index of the player in the players list
+     * @return the key of the player
+     */
+    static long turnKey(int playerIndex) {
+        return turnKeys[playerIndex];
+    }
+
+    // the splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}